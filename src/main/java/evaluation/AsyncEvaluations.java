@@ -0,0 +1,287 @@
+package evaluation;
+
+import DTOs.*;
+import com.mongodb.MongoException;
+import util.ClientContext;
+import util.Constants;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+* Asynchronous facade of the reads of Metric, Factor and StrategicIndicator. Each read runs in a bounded executor
+* and returns a CompletableFuture, so that independent reads can be run in parallel and composed.
+* The reads use the ClientContext bound to the calling thread when they are submitted (or the default one).
+* Cancelling a future interrupts its read, or prevents it from starting if it is still waiting in the executor.
+*/
+public class AsyncEvaluations implements AutoCloseable {
+
+    private final ExecutorService executor;
+    private final boolean ownsExecutor;
+    private final ScheduledExecutorService scheduler;
+
+    private final Metrics metrics = new Metrics();
+    private final Factors factors = new Factors();
+    private final StrategicIndicators strategicIndicators = new StrategicIndicators();
+
+    /**
+    * Create the facade with its own executor.
+    *
+    * @param threads Maximum number of reads running at the same time.
+    * @param queueCapacity Maximum number of reads waiting for a thread. When it is full, the futures of the new
+    *                      reads are completed with a RejectedExecutionException.
+    */
+    public AsyncEvaluations(int threads, int queueCapacity) {
+        this(new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+            new ArrayBlockingQueue<>(queueCapacity), daemonThreads("async-evaluations-")), true);
+    }
+
+    /**
+    * Create the facade over an existing executor, which is not shut down when the facade is closed.
+    *
+    * @param executor The executor where the reads are run.
+    */
+    public AsyncEvaluations(ExecutorService executor) {
+        this(executor, false);
+    }
+
+    private AsyncEvaluations(ExecutorService executor, boolean ownsExecutor) {
+        this.executor = executor;
+        this.ownsExecutor = ownsExecutor;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(daemonThreads("async-evaluations-timeout-"));
+    }
+
+    private static ThreadFactory daemonThreads(String prefix) {
+        AtomicInteger count = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + count.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    public Metrics metrics() {
+        return metrics;
+    }
+
+    public Factors factors() {
+        return factors;
+    }
+
+    public StrategicIndicators strategicIndicators() {
+        return strategicIndicators;
+    }
+
+    /**
+    * Run a read in the executor, with the ClientContext bound to the calling thread.
+    *
+    * @param read The read.
+    *
+    * @return The future result of the read.
+    */
+    public <T> CompletableFuture<T> submit(Callable<T> read) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        try {
+            ClientContext context = ClientContext.current();
+            Future<?> task = executor.submit(() -> {
+                if (result.isDone()) return;
+                try {
+                    result.complete(context.call(read));
+                } catch (Throwable e) {
+                    result.completeExceptionally(e);
+                }
+            });
+            // A cancellation or a timeout (see withTimeout) stops the read and frees its thread
+            result.whenComplete((value, error) -> {
+                if (error != null) task.cancel(true);
+            });
+        } catch (RejectedExecutionException | MongoException e) {
+            result.completeExceptionally(e);
+        }
+        return result;
+    }
+
+    /**
+    * Complete a future with a TimeoutException if it has not finished in the given time. The read of a future
+    * returned by submit is then cancelled.
+    *
+    * @param future The future.
+    * @param timeout The maximum time to wait.
+    * @param unit The unit of the timeout.
+    *
+    * @return The same future.
+    */
+    public <T> CompletableFuture<T> withTimeout(CompletableFuture<T> future, long timeout, TimeUnit unit) {
+        ScheduledFuture<?> timer = scheduler.schedule(
+            () -> future.completeExceptionally(new TimeoutException("Read not completed in " + timeout + " " + unit)),
+            timeout, unit);
+        future.whenComplete((value, error) -> timer.cancel(false));
+        return future;
+    }
+
+    /**
+    * Shut down the executor (if it belongs to the facade) and the timeout scheduler. The reads already
+    * submitted are completed.
+    */
+    @Override
+    public void close() {
+        if (ownsExecutor) executor.shutdown();
+        scheduler.shutdownNow();
+    }
+
+    /**
+    * Asynchronous reads of Metric.
+    */
+    public class Metrics {
+
+        public CompletableFuture<List<MetricEvaluationDTO>> getEvaluations(String projectId) {
+            return submit(() -> Metric.getEvaluations(projectId));
+        }
+
+        public CompletableFuture<List<MetricEvaluationDTO>> getEvaluations(String projectId, Constants.ReadProfile profile) {
+            return submit(() -> Metric.getEvaluations(projectId, profile));
+        }
+
+        public CompletableFuture<List<MetricEvaluationDTO>> getEvaluations(String projectId, LocalDate from, LocalDate to) {
+            return submit(() -> Metric.getEvaluations(projectId, from, to));
+        }
+
+        public CompletableFuture<List<MetricEvaluationDTO>> getEvaluations(String projectId, LocalDate from, LocalDate to,
+                                                                           Constants.ReadProfile profile) {
+            return submit(() -> Metric.getEvaluations(projectId, from, to, profile));
+        }
+
+        public CompletableFuture<MetricEvaluationDTO> getSingleEvaluation(String projectId, String metricId) {
+            return submit(() -> Metric.getSingleEvaluation(projectId, metricId));
+        }
+
+        public CompletableFuture<MetricEvaluationDTO> getSingleEvaluation(String projectId, String metricId,
+                                                                          LocalDate from, LocalDate to) {
+            return submit(() -> Metric.getSingleEvaluation(projectId, metricId, from, to));
+        }
+    }
+
+    /**
+    * Asynchronous reads of Factor.
+    */
+    public class Factors {
+
+        public CompletableFuture<List<FactorEvaluationDTO>> getEvaluations(String projectId) {
+            return submit(() -> Factor.getEvaluations(projectId));
+        }
+
+        public CompletableFuture<List<FactorEvaluationDTO>> getEvaluations(String projectId, Constants.ReadProfile profile) {
+            return submit(() -> Factor.getEvaluations(projectId, profile));
+        }
+
+        public CompletableFuture<List<FactorEvaluationDTO>> getEvaluations(String projectId, LocalDate from, LocalDate to) {
+            return submit(() -> Factor.getEvaluations(projectId, from, to));
+        }
+
+        public CompletableFuture<List<FactorEvaluationDTO>> getEvaluations(String projectId, LocalDate from, LocalDate to,
+                                                                           Constants.ReadProfile profile) {
+            return submit(() -> Factor.getEvaluations(projectId, from, to, profile));
+        }
+
+        public CompletableFuture<FactorEvaluationDTO> getSingleEvaluation(String projectId, String factorId) {
+            return submit(() -> Factor.getSingleEvaluation(projectId, factorId));
+        }
+
+        public CompletableFuture<List<FactorMetricEvaluationDTO>> getMetricsEvaluations(String projectId) {
+            return submit(() -> Factor.getMetricsEvaluations(projectId));
+        }
+
+        public CompletableFuture<List<FactorMetricEvaluationDTO>> getMetricsEvaluations(String projectId,
+                                                                                        LocalDate from, LocalDate to) {
+            return submit(() -> Factor.getMetricsEvaluations(projectId, from, to));
+        }
+
+        public CompletableFuture<FactorMetricEvaluationDTO> getMetricsEvaluations(String projectId, String factorID) {
+            return submit(() -> Factor.getMetricsEvaluations(projectId, factorID));
+        }
+
+        public CompletableFuture<FactorMetricEvaluationDTO> getMetricsEvaluations(String projectId, String factorID,
+                                                                                  LocalDate from, LocalDate to) {
+            return submit(() -> Factor.getMetricsEvaluations(projectId, factorID, from, to));
+        }
+    }
+
+    /**
+    * Asynchronous reads of StrategicIndicator.
+    */
+    public class StrategicIndicators {
+
+        public CompletableFuture<List<StrategicIndicatorEvaluationDTO>> getEvaluations(String projectId) {
+            return submit(() -> StrategicIndicator.getEvaluations(projectId));
+        }
+
+        public CompletableFuture<List<StrategicIndicatorEvaluationDTO>> getEvaluations(String projectId,
+                                                                                       Constants.ReadProfile profile) {
+            return submit(() -> StrategicIndicator.getEvaluations(projectId, profile));
+        }
+
+        public CompletableFuture<List<StrategicIndicatorEvaluationDTO>> getEvaluations(String projectId,
+                                                                                       LocalDate from, LocalDate to) {
+            return submit(() -> StrategicIndicator.getEvaluations(projectId, from, to));
+        }
+
+        public CompletableFuture<List<StrategicIndicatorEvaluationDTO>> getEvaluations(String projectId,
+                                                                                       LocalDate from, LocalDate to,
+                                                                                       Constants.ReadProfile profile) {
+            return submit(() -> StrategicIndicator.getEvaluations(projectId, from, to, profile));
+        }
+
+        public CompletableFuture<StrategicIndicatorEvaluationDTO> getSingleEvaluation(String projectId,
+                                                                                      String strategicIndicatorId) {
+            return submit(() -> StrategicIndicator.getSingleEvaluation(projectId, strategicIndicatorId));
+        }
+
+        public CompletableFuture<List<StrategicIndicatorFactorEvaluationDTO>> getFactorsEvaluations(String projectId) {
+            return submit(() -> StrategicIndicator.getFactorsEvaluations(projectId));
+        }
+
+        public CompletableFuture<List<StrategicIndicatorFactorEvaluationDTO>> getFactorsEvaluations(String projectId,
+                                                                                                    LocalDate from,
+                                                                                                    LocalDate to) {
+            return submit(() -> StrategicIndicator.getFactorsEvaluations(projectId, from, to));
+        }
+
+        public CompletableFuture<StrategicIndicatorFactorEvaluationDTO> getFactorsEvaluations(String projectId,
+                                                                                              String strategicIndicatorID) {
+            return submit(() -> StrategicIndicator.getFactorsEvaluations(projectId, strategicIndicatorID));
+        }
+
+        public CompletableFuture<StrategicIndicatorFactorEvaluationDTO> getFactorsEvaluations(String projectId,
+                                                                                              String strategicIndicatorID,
+                                                                                              LocalDate from,
+                                                                                              LocalDate to) {
+            return submit(() -> StrategicIndicator.getFactorsEvaluations(projectId, strategicIndicatorID, from, to));
+        }
+
+        public CompletableFuture<List<FactorMetricEvaluationDTO>> getMetricsEvaluations(String projectId,
+                                                                                        String strategicIndicatorID) {
+            return submit(() -> StrategicIndicator.getMetricsEvaluations(projectId, strategicIndicatorID));
+        }
+
+        public CompletableFuture<List<FactorMetricEvaluationDTO>> getMetricsEvaluations(String projectId,
+                                                                                        String strategicIndicatorID,
+                                                                                        LocalDate from, LocalDate to) {
+            return submit(() -> StrategicIndicator.getMetricsEvaluations(projectId, strategicIndicatorID, from, to));
+        }
+    }
+
+}
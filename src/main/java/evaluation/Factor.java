@@ -1,21 +1,27 @@
 package evaluation;
 
 import DTOs.*;
+import com.mongodb.client.MongoCursor;
 import com.mongodb.client.result.UpdateResult;
 import org.bson.Document;
+import util.BatchWriteResult;
 import util.Common;
 import util.Constants;
+import util.Downsampling;
+import util.EvaluationIterator;
 import util.FormattedDates;
+import util.IncrementalEvaluations;
+import util.Page;
 import util.Queries;
 
 import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.stream.Stream;
 
 
 public class Factor {
-    private static Map<String, String> IDNames;
 
     /**
     * This method returns the list of the factors and the last evaluation.
@@ -27,11 +33,23 @@ public class Factor {
     */
     public static List<FactorEvaluationDTO> getEvaluations(String projectId) {
         List<FactorEvaluationDTO> ret;
-        List<Document> sr = Queries.getLatest(projectId, Constants.QMLevel.factors);
-        ret = Common.processFactorsBuckets(sr);
+        ret = Queries.getLatest(Constants.QMLevel.factors, projectId, "all", FactorEvaluationDTO.class);
         return ret;
     }
 
+    /**
+    * This method returns the list of the factors and their last evaluation, retrieving only the fields
+    * of the given profile (e.g. ReadProfile.values for charts, ReadProfile.header for names and descriptions).
+    *
+    * @param projectId Identifier of the project.
+    * @param profile Fields of the evaluations to be retrieved.
+    *
+    * @return The list of factors evaluations.
+    */
+    public static List<FactorEvaluationDTO> getEvaluations(String projectId, Constants.ReadProfile profile) {
+        return Queries.getLatest(Constants.QMLevel.factors, projectId, "all", profile, FactorEvaluationDTO.class);
+    }
+
     /**
     * This method returns the last evaluation of the factor passed as a parameter.
     * The evaluation contains the evaluation date and value.
@@ -44,8 +62,7 @@ public class Factor {
     public static FactorEvaluationDTO getSingleEvaluation(String projectId, String factorId) {
         List<FactorEvaluationDTO> ret;
         FactorEvaluationDTO factorEvaluationDTO = null;
-        List<Document> sr = Queries.getLatestElement(projectId, Constants.QMLevel.factors, factorId);
-        ret = Common.processFactorsBuckets(sr);
+        ret = Queries.getLatestElement(projectId, Constants.QMLevel.factors, factorId, FactorEvaluationDTO.class);
         if (!ret.isEmpty()) factorEvaluationDTO = ret.get(0);
         return factorEvaluationDTO;
     }
@@ -62,11 +79,133 @@ public class Factor {
     */
     public static List<FactorEvaluationDTO> getEvaluations(String projectId, LocalDate from, LocalDate to) {
         List<FactorEvaluationDTO> ret;
-        List<Document> sr = Queries.getRanged(Constants.QMLevel.factors, projectId, from, to);
-        ret = Common.processFactorsBuckets(sr);
+        ret = Queries.getRanged(Constants.QMLevel.factors, projectId, "all", from, to, FactorEvaluationDTO.class);
         return ret;
     }
 
+    /**
+    * This method returns the list of the factors and the evaluations belonging to a specific period defined by the
+    * parameters from and to, retrieving only the fields of the given profile.
+    *
+    * @param projectId Identifier of the project.
+    * @param from Initial date from the range we are querying.
+    * @param to Final date from the range we are querying.
+    * @param profile Fields of the evaluations to be retrieved.
+    *
+    * @return The list of factors evaluations.
+    */
+    public static List<FactorEvaluationDTO> getEvaluations(String projectId, LocalDate from, LocalDate to, Constants.ReadProfile profile) {
+        return Queries.getRanged(Constants.QMLevel.factors, projectId, "all", from, to, profile, FactorEvaluationDTO.class);
+    }
+
+    /**
+    * This method returns the list of the factors and the evaluations belonging to a specific period defined by the
+    * parameters from and to, downsampled to one evaluation per time bucket (e.g. one per week).
+    *
+    * @param projectId Identifier of the project.
+    * @param from Initial date from the range we are querying.
+    * @param to Final date from the range we are querying.
+    * @param downsampling Time buckets and value of each bucket.
+    *
+    * @return The list of factors evaluations.
+    */
+    public static List<FactorEvaluationDTO> getDownsampledEvaluations(String projectId, LocalDate from, LocalDate to, Downsampling downsampling) {
+        return Queries.getRanged(Constants.QMLevel.factors, projectId, "all", from, to, Constants.ReadProfile.full,
+            downsampling, FactorEvaluationDTO.class);
+    }
+
+    /**
+    * This method returns a page of the list of the factors and their last evaluation, sorted by identifier.
+    *
+    * @param projectId Identifier of the project.
+    * @param pageSize Maximum number of factors of the page.
+    * @param pageToken Token returned by the previous page, or null to get the first page.
+    *
+    * @return The page of evaluations, with the token of the next page (if any).
+    */
+    public static Page<FactorEvaluationDTO> getEvaluationsPage(String projectId, int pageSize, String pageToken) {
+        return Queries.getLatestPage(Constants.QMLevel.factors, projectId, "all", Constants.ReadProfile.full, pageSize,
+            pageToken, FactorEvaluationDTO.class);
+    }
+
+    /**
+    * This method returns a page of the list of the factors and the evaluations belonging to a specific period defined
+    * by the parameters from and to, sorted by identifier and evaluation date. The evaluations of an element may be
+    * split between consecutive pages.
+    *
+    * @param projectId Identifier of the project.
+    * @param from Initial date from the range we are querying.
+    * @param to Final date from the range we are querying.
+    * @param pageSize Maximum number of evaluations of the page.
+    * @param pageToken Token returned by the previous page, or null to get the first page.
+    *
+    * @return The page of evaluations, with the token of the next page (if any).
+    */
+    public static Page<FactorEvaluationDTO> getEvaluationsPage(String projectId, LocalDate from, LocalDate to, int pageSize,
+                                                               String pageToken) {
+        return Queries.getRangedPage(Constants.QMLevel.factors, projectId, "all", from, to, Constants.ReadProfile.full,
+            pageSize, pageToken, FactorEvaluationDTO.class);
+    }
+
+    /**
+    * This method returns the list of the factors and the evaluations belonging to a period as a result set that is
+    * kept up to date by polling only the evaluations added since the previous poll (see IncrementalEvaluations).
+    *
+    * @param projectId Identifier of the project.
+    *
+    * @return The incremental result set, which is empty until the first poll.
+    */
+    public static IncrementalEvaluations<FactorEvaluationDTO> getIncrementalEvaluations(String projectId) {
+        return new IncrementalEvaluations<>((from, to) -> getEvaluations(projectId, from, to));
+    }
+
+    /**
+    * This method returns the list of the factors and the evaluations belonging to a period as a result set that is
+    * kept up to date by polling only the evaluations added since the previous poll, retrieving only the fields of
+    * the given profile.
+    *
+    * @param projectId Identifier of the project.
+    * @param profile Fields of the evaluations to be retrieved.
+    *
+    * @return The incremental result set, which is empty until the first poll.
+    */
+    public static IncrementalEvaluations<FactorEvaluationDTO> getIncrementalEvaluations(String projectId, Constants.ReadProfile profile) {
+        return new IncrementalEvaluations<>((from, to) -> getEvaluations(projectId, from, to, profile));
+    }
+
+    /**
+    * This method returns the factors and the evaluations belonging to a specific period defined by the parameters
+    * from and to, as a Stream. The evaluations are read from the database while the Stream is consumed, so only
+    * the factor being built is kept in memory. The Stream must be closed when it is not fully consumed.
+    * Unlike getEvaluations, the factors are returned in descending order of ID, so that the database reads them
+    * from the index instead of sorting them; their evaluations are in ascending order of date.
+    *
+    * @param projectId Identifier of the project.
+    * @param from Initial date from the range we are querying.
+    * @param to Final date from the range we are querying.
+    * @param batchSize Number of evaluations fetched from the database in each round-trip.
+    *
+    * @return Stream of factors evaluations.
+    */
+    public static Stream<FactorEvaluationDTO> getEvaluationsStream(String projectId, LocalDate from, LocalDate to, int batchSize) {
+        MongoCursor<Document> cursor = Queries.getRangedCursor(Constants.QMLevel.factors, projectId, "all", from, to, batchSize);
+        return Common.toStream(EvaluationIterator.factors(cursor));
+    }
+
+    /**
+    * This method returns the factors and the evaluations belonging to a specific period defined by the parameters
+    * from and to, as a Stream, using the default batch size.
+    *
+    * @param projectId Identifier of the project.
+    * @param from Initial date from the range we are querying.
+    * @param to Final date from the range we are querying.
+    *
+    * @return Stream of factors evaluations.
+    */
+    public static Stream<FactorEvaluationDTO> getEvaluationsStream(String projectId, LocalDate from, LocalDate to) {
+        return getEvaluationsStream(projectId, from, to, Constants.DEFAULT_BATCH_SIZE);
+    }
+
     /**
     * The external repository have two identifiers for each element, the field used by the repository
     * (hard ID) and the id and evaluation date used by the "users".
@@ -119,16 +258,56 @@ public class Factor {
 
     }
 
+    /**
+    * This method updates the evaluations of a list of factors, creating the ones that don't exist, with unordered
+    * bulk writes of at most batchSize evaluations each. Every evaluation of each factor is written with the
+    * same data as setFactorEvaluation.
+    *
+    * @param projectId Identifier of the project.
+    * @param factors DTOs with the factors and their evaluations.
+    * @param batchSize Maximum number of evaluations sent in each bulk write.
+    *
+    * @return The result of each evaluation, identified by its hard ID.
+    */
+    public static BatchWriteResult setFactorEvaluations(String projectId, List<FactorEvaluationDTO> factors, int batchSize) {
+        List<String> hardIDs = new ArrayList<>();
+        List<Document> updates = new ArrayList<>();
+        for (FactorEvaluationDTO factor : factors) {
+            for (EvaluationDTO evaluation : factor.getEvaluations()) {
+                String elastic_entry_ID = getHardID(projectId, factor.getID(), evaluation.getEvaluationDate());
+                hardIDs.add(elastic_entry_ID);
+                updates.add(Queries.buildFactorUpdate(
+                    elastic_entry_ID, projectId, factor.getID(), factor.getName(),
+                    factor.getDescription(), evaluation.getEvaluationDate(),
+                    evaluation.getValue(), evaluation.getRationale(), null,
+                    evaluation.getMissingElements(), evaluation.getMismatchDays(),
+                    factor.getStrategicIndicators()));
+            }
+        }
+        return Queries.setValues(Constants.QMLevel.factors, projectId, hardIDs, updates, batchSize);
+    }
+
+    /**
+    * This method updates the evaluations of a list of factors using the default batch size.
+    *
+    * @param projectId Identifier of the project.
+    * @param factors DTOs with the factors and their evaluations.
+    *
+    * @return The result of each evaluation, identified by its hard ID.
+    */
+    public static BatchWriteResult setFactorEvaluations(String projectId, List<FactorEvaluationDTO> factors) {
+        return setFactorEvaluations(projectId, factors, Constants.DEFAULT_WRITE_BATCH_SIZE);
+    }
+
     /**
     * This method updates the value of the strategic indicators' relation for a list of factor.
     *
     * @param factors DTO with the factor information.
+    *
+    * @return The aggregated result of the updates of every factor evaluation.
     */
     public static UpdateResult setStrategicIndicatorRelation(List<FactorEvaluationDTO> factors) {
-        UpdateResult response = null;
-        for (FactorEvaluationDTO factor: factors)
-            response = Queries.setFactorStrategicIndicatorRelation(factor);
-        return response;
+        return Queries.setFactorsStrategicIndicatorRelation(factors, Constants.DEFAULT_WRITE_BATCH_SIZE);
     }
 
 
@@ -142,14 +321,9 @@ public class Factor {
     *         the evaluation of the metrics used to compute the factor.
     */
     public static List<FactorMetricEvaluationDTO> getMetricsEvaluations(String projectId) {
-        List<FactorMetricEvaluationDTO> ret = new ArrayList<>();
-        Map<String, String> IDNames = getFactorsIDNames(projectId);
-        for (String factorID : IDNames.keySet()) {
-            FactorMetricEvaluationDTO factorMetrics = getMetricsEvaluations(projectId, factorID);
-            ret.add(factorMetrics);
-        }
-        resetFactorsIDNames();
-        return ret;
+        Map<String, List<MetricEvaluationDTO>> metricsEval = Common.processMetricsBucketsByParent(
+            Queries.getLatestByParent(Constants.QMLevel.metrics, projectId, null));
+        return joinMetricsEvaluations(projectId, metricsEval);
     }
 
     /**
@@ -165,13 +339,28 @@ public class Factor {
     *         the evaluation of the metrics used to compute the factor.
     */
     public static List<FactorMetricEvaluationDTO> getMetricsEvaluations(String projectId, LocalDate from, LocalDate to) {
+        Map<String, List<MetricEvaluationDTO>> metricsEval = Common.processMetricsBucketsByParent(
+            Queries.getRangedByParent(Constants.QMLevel.metrics, projectId, null, from, to));
+        return joinMetricsEvaluations(projectId, metricsEval);
+    }
+
+    /**
+    * Join the last evaluation of every factor of the project with the evaluations of its metrics.
+    *
+    * @param projectId Identifier of the project.
+    * @param metricsEval The metrics' evaluations of each factor.
+    *
+    * @return The list of factors' evaluations, for each factor it contains the list of
+    *         the evaluation of the metrics used to compute the factor.
+    */
+    private static List<FactorMetricEvaluationDTO> joinMetricsEvaluations(String projectId,
+                                                                          Map<String, List<MetricEvaluationDTO>> metricsEval) {
         List<FactorMetricEvaluationDTO> ret = new ArrayList<>();
-        Map<String, String> IDNames = getFactorsIDNames(projectId);
-        for (String factorID : IDNames.keySet()) {
-            FactorMetricEvaluationDTO factorMetrics = getMetricsEvaluations(projectId, factorID, from, to);
-            ret.add(factorMetrics);
+        for (FactorEvaluationDTO factor : getEvaluations(projectId)) {
+            List<MetricEvaluationDTO> metrics = metricsEval.get(factor.getID());
+            if (metrics == null) metrics = new ArrayList<>();
+            ret.add(new FactorMetricEvaluationDTO(factor, metrics));
         }
-        resetFactorsIDNames();
         return ret;
     }
 
@@ -188,8 +377,7 @@ public class Factor {
     public static FactorMetricEvaluationDTO getMetricsEvaluations(String projectId, String factorID) {
         //Map<String, String> IDNames = getFactorsIDNames(projectId);
         //String factorName = Queries.getStringFromStringMapOrDefault(IDNames, factorID, factorID);
-        List<Document> sr = Queries.getLatest(Constants.QMLevel.metrics, projectId,  factorID);
-        List<MetricEvaluationDTO> metricsEval = Common.processMetricsBuckets(sr);
+        List<MetricEvaluationDTO> metricsEval = Queries.getLatest(Constants.QMLevel.metrics, projectId, factorID, MetricEvaluationDTO.class);
         FactorEvaluationDTO factorEvaluationDTO = getSingleEvaluation(projectId, factorID);
         return new FactorMetricEvaluationDTO(factorEvaluationDTO, metricsEval);
     }
@@ -210,32 +398,16 @@ public class Factor {
     public static FactorMetricEvaluationDTO getMetricsEvaluations(String projectId, String factorID, LocalDate from, LocalDate to) {
         //Map<String, String> IDNames = getFactorsIDNames(projectId);
         //String factorName = Queries.getStringFromStringMapOrDefault(IDNames, factorID, factorID);
-        List<Document> sr = Queries.getRanged(Constants.QMLevel.metrics, projectId, factorID, from, to);
-        List<MetricEvaluationDTO> metricsEval = Common.processMetricsBuckets(sr);
+        List<MetricEvaluationDTO> metricsEval = Queries.getRanged(Constants.QMLevel.metrics, projectId, factorID, from, to, MetricEvaluationDTO.class);
         FactorEvaluationDTO factorEvaluationDTO = getSingleEvaluation(projectId, factorID);
         return new FactorMetricEvaluationDTO(factorEvaluationDTO, metricsEval);
     }
 
     /**
-    * This method returns a map containing, for each existing factor in a project, its identifier and name.
-    *
-    * @param projectId Identifier of the projectId.
-    *
-    * @return A Map<ID, name> for each existing factor in the project.
-    */
-    private static Map<String, String> getFactorsIDNames(String projectId) {
-        if (IDNames == null) {
-            IDNames = Common.getIDNames(projectId, Constants.QMLevel.factors);
-            return IDNames;
-        }
-        return IDNames;
-    }
-
-    /**
-    * Reset the map which stores the factors' identifiers and names.
+    * Reset the cached factors' identifiers and names, which are reloaded in the next access.
     */
     public static void resetFactorsIDNames() {
-        IDNames = null;
+        Common.resetIDNames(Constants.QMLevel.factors);
     }
 
 }
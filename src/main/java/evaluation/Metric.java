@@ -1,14 +1,20 @@
 package evaluation;
 
 import DTOs.MetricEvaluationDTO;
+import com.mongodb.client.MongoCursor;
 import com.mongodb.client.result.UpdateResult;
 import org.bson.Document;
 import util.Common;
 import util.Constants;
+import util.Downsampling;
+import util.EvaluationIterator;
+import util.IncrementalEvaluations;
+import util.Page;
 import util.Queries;
 
 import java.time.LocalDate;
 import java.util.List;
+import java.util.stream.Stream;
 
 public class Metric {
 
@@ -22,11 +28,23 @@ public class Metric {
     */
     public static List<MetricEvaluationDTO> getEvaluations(String projectId) {
         List<MetricEvaluationDTO> ret;
-        List<Document> sr = Queries.getLatest(projectId, Constants.QMLevel.metrics);
-        ret = Common.processMetricsBuckets(sr);
+        ret = Queries.getLatest(Constants.QMLevel.metrics, projectId, "all", MetricEvaluationDTO.class);
         return ret;
     }
 
+    /**
+    * This method returns the list of the metrics and their last evaluation, retrieving only the fields
+    * of the given profile (e.g. ReadProfile.values for charts, ReadProfile.header for names and descriptions).
+    *
+    * @param projectId Identifier of the project.
+    * @param profile Fields of the evaluations to be retrieved.
+    *
+    * @return List of metric evaluations.
+    */
+    public static List<MetricEvaluationDTO> getEvaluations(String projectId, Constants.ReadProfile profile) {
+        return Queries.getLatest(Constants.QMLevel.metrics, projectId, "all", profile, MetricEvaluationDTO.class);
+    }
+
     /**
     * This method returns the last evaluation of the metric passed as a parameter.
     * The evaluation contains the evaluation date and value.
@@ -39,8 +57,7 @@ public class Metric {
     public static MetricEvaluationDTO getSingleEvaluation(String projectId, String metricId) {
         List<MetricEvaluationDTO> ret;
         MetricEvaluationDTO metricEvaluationDTO = null;
-        List<Document> sr = Queries.getLatestElement(projectId, Constants.QMLevel.metrics, metricId);
-        ret = Common.processMetricsBuckets(sr);
+        ret = Queries.getLatestElement(projectId, Constants.QMLevel.metrics, metricId, MetricEvaluationDTO.class);
         if (!ret.isEmpty()) metricEvaluationDTO = ret.get(0);
         return metricEvaluationDTO;
     }
@@ -57,11 +74,133 @@ public class Metric {
     */
     public static List<MetricEvaluationDTO> getEvaluations(String projectId, LocalDate from, LocalDate to) {
         List<MetricEvaluationDTO> ret;
-        List<Document> sr = Queries.getRanged(Constants.QMLevel.metrics, projectId, from, to);
-        ret = Common.processMetricsBuckets(sr);
+        ret = Queries.getRanged(Constants.QMLevel.metrics, projectId, "all", from, to, MetricEvaluationDTO.class);
         return ret;
     }
 
+    /**
+    * This method returns the list of the metrics and the evaluations belonging to a specific period defined by the
+    * parameters from and to, retrieving only the fields of the given profile.
+    *
+    * @param projectId Identifier of the project.
+    * @param from Initial date from the range we are querying.
+    * @param to Final date from the range we are querying.
+    * @param profile Fields of the evaluations to be retrieved.
+    *
+    * @return List of metric evaluations.
+    */
+    public static List<MetricEvaluationDTO> getEvaluations(String projectId, LocalDate from, LocalDate to, Constants.ReadProfile profile) {
+        return Queries.getRanged(Constants.QMLevel.metrics, projectId, "all", from, to, profile, MetricEvaluationDTO.class);
+    }
+
+    /**
+    * This method returns the list of the metrics and the evaluations belonging to a specific period defined by the
+    * parameters from and to, downsampled to one evaluation per time bucket (e.g. one per week).
+    *
+    * @param projectId Identifier of the project.
+    * @param from Initial date from the range we are querying.
+    * @param to Final date from the range we are querying.
+    * @param downsampling Time buckets and value of each bucket.
+    *
+    * @return List of metric evaluations.
+    */
+    public static List<MetricEvaluationDTO> getDownsampledEvaluations(String projectId, LocalDate from, LocalDate to, Downsampling downsampling) {
+        return Queries.getRanged(Constants.QMLevel.metrics, projectId, "all", from, to, Constants.ReadProfile.full,
+            downsampling, MetricEvaluationDTO.class);
+    }
+
+    /**
+    * This method returns a page of the list of the metrics and their last evaluation, sorted by identifier.
+    *
+    * @param projectId Identifier of the project.
+    * @param pageSize Maximum number of metrics of the page.
+    * @param pageToken Token returned by the previous page, or null to get the first page.
+    *
+    * @return The page of evaluations, with the token of the next page (if any).
+    */
+    public static Page<MetricEvaluationDTO> getEvaluationsPage(String projectId, int pageSize, String pageToken) {
+        return Queries.getLatestPage(Constants.QMLevel.metrics, projectId, "all", Constants.ReadProfile.full, pageSize,
+            pageToken, MetricEvaluationDTO.class);
+    }
+
+    /**
+    * This method returns a page of the list of the metrics and the evaluations belonging to a specific period defined
+    * by the parameters from and to, sorted by identifier and evaluation date. The evaluations of an element may be
+    * split between consecutive pages.
+    *
+    * @param projectId Identifier of the project.
+    * @param from Initial date from the range we are querying.
+    * @param to Final date from the range we are querying.
+    * @param pageSize Maximum number of evaluations of the page.
+    * @param pageToken Token returned by the previous page, or null to get the first page.
+    *
+    * @return The page of evaluations, with the token of the next page (if any).
+    */
+    public static Page<MetricEvaluationDTO> getEvaluationsPage(String projectId, LocalDate from, LocalDate to, int pageSize,
+                                                               String pageToken) {
+        return Queries.getRangedPage(Constants.QMLevel.metrics, projectId, "all", from, to, Constants.ReadProfile.full,
+            pageSize, pageToken, MetricEvaluationDTO.class);
+    }
+
+    /**
+    * This method returns the list of the metrics and the evaluations belonging to a period as a result set that is
+    * kept up to date by polling only the evaluations added since the previous poll (see IncrementalEvaluations).
+    *
+    * @param projectId Identifier of the project.
+    *
+    * @return The incremental result set, which is empty until the first poll.
+    */
+    public static IncrementalEvaluations<MetricEvaluationDTO> getIncrementalEvaluations(String projectId) {
+        return new IncrementalEvaluations<>((from, to) -> getEvaluations(projectId, from, to));
+    }
+
+    /**
+    * This method returns the list of the metrics and the evaluations belonging to a period as a result set that is
+    * kept up to date by polling only the evaluations added since the previous poll, retrieving only the fields of
+    * the given profile.
+    *
+    * @param projectId Identifier of the project.
+    * @param profile Fields of the evaluations to be retrieved.
+    *
+    * @return The incremental result set, which is empty until the first poll.
+    */
+    public static IncrementalEvaluations<MetricEvaluationDTO> getIncrementalEvaluations(String projectId, Constants.ReadProfile profile) {
+        return new IncrementalEvaluations<>((from, to) -> getEvaluations(projectId, from, to, profile));
+    }
+
+    /**
+    * This method returns the metrics and the evaluations belonging to a specific period defined by the parameters
+    * from and to, as a Stream. The evaluations are read from the database while the Stream is consumed, so only
+    * the metric being built is kept in memory. The Stream must be closed when it is not fully consumed.
+    * Unlike getEvaluations, the metrics are returned in descending order of ID, so that the database reads them
+    * from the index instead of sorting them; their evaluations are in ascending order of date.
+    *
+    * @param projectId Identifier of the project.
+    * @param from Initial date from the range we are querying.
+    * @param to Final date from the range we are querying.
+    * @param batchSize Number of evaluations fetched from the database in each round-trip.
+    *
+    * @return Stream of metric evaluations.
+    */
+    public static Stream<MetricEvaluationDTO> getEvaluationsStream(String projectId, LocalDate from, LocalDate to, int batchSize) {
+        MongoCursor<Document> cursor = Queries.getRangedCursor(Constants.QMLevel.metrics, projectId, "all", from, to, batchSize);
+        return Common.toStream(EvaluationIterator.metrics(cursor));
+    }
+
+    /**
+    * This method returns the metrics and the evaluations belonging to a specific period defined by the parameters
+    * from and to, as a Stream, using the default batch size.
+    *
+    * @param projectId Identifier of the project.
+    * @param from Initial date from the range we are querying.
+    * @param to Final date from the range we are querying.
+    *
+    * @return Stream of metric evaluations.
+    */
+    public static Stream<MetricEvaluationDTO> getEvaluationsStream(String projectId, LocalDate from, LocalDate to) {
+        return getEvaluationsStream(projectId, from, to, Constants.DEFAULT_BATCH_SIZE);
+    }
+
     /**
     * This method returns the last evaluation of the metric passed as a parameter.
     * The evaluation contains the evaluation date and value.
@@ -74,8 +213,7 @@ public class Metric {
     public static MetricEvaluationDTO getSingleEvaluation(String projectId, String metricId, LocalDate from, LocalDate to) {
         List<MetricEvaluationDTO> ret;
         MetricEvaluationDTO metricEvaluationDTO = null;
-        List<Document> sr = Queries.getRangedElement(projectId, Constants.QMLevel.metrics, metricId, from, to);
-        ret = Common.processMetricsBuckets(sr);
+        ret = Queries.getRangedElement(projectId, Constants.QMLevel.metrics, metricId, from, to, MetricEvaluationDTO.class);
         if (!ret.isEmpty()) metricEvaluationDTO = ret.get(0);
         return metricEvaluationDTO;
     }
@@ -84,12 +222,11 @@ public class Metric {
     * This method updates the value of the quality factors relation for a list of metrics.
     *
     * @param metrics DTO with the metric information.
+    *
+    * @return The aggregated result of the updates of every metric evaluation.
     */
     public static UpdateResult setQualityFactorsRelation(List<MetricEvaluationDTO> metrics) {
-        UpdateResult response = null;
-        for (MetricEvaluationDTO metric: metrics)
-            response = Queries.setMetricQualityFactorRelation(metric);
-        return response;
+        return Queries.setMetricsQualityFactorsRelation(metrics, Constants.DEFAULT_WRITE_BATCH_SIZE);
     }
 
 }
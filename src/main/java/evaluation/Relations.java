@@ -9,12 +9,12 @@ import util.Queries;
 
 import java.time.LocalDate;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 
 public class Relations {
 
+    private static final int RELATIONS_WINDOW_DAYS = 15;
+
     /**
     * This method returns the existing relations from the last 15 days.
     *
@@ -23,15 +23,8 @@ public class Relations {
     * @return A list of this relations (RelationDTO).
     */
     public static ArrayList<RelationDTO> getRelations(String projectID) {
-        List<Document> sr = Queries.getLatestRelationsDate(projectID);
-        if (sr.size() > 0) {
-            Document doc = sr.get(0);
-            Object evalDate = doc.get(Constants.EVALUATION_DATE);
-            LocalDate date = LocalDate.parse(Queries.getStringFromObject(evalDate));
-            return getRelations(projectID, date);
-        }
-        LocalDate date = LocalDate.now();
-        return getRelations(projectID, date);
+        // The newest date and its window are resolved by a single (cacheable) query
+        return getRelationDTOs(Queries.getCurrentRelations(projectID, RELATIONS_WINDOW_DAYS));
     }
 
     /**
@@ -43,48 +36,37 @@ public class Relations {
     * @return A list of this relations (RelationDTO).
     */
     public static ArrayList<RelationDTO> getRelations(String projectID, LocalDate dateTo) {
-        LocalDate dateFrom = dateTo.minusDays(15);
-        ArrayList<RelationDTO> relationDTO = new ArrayList<>();
-
-        List<Document> responseRelations = Queries.getRelations(dateFrom, dateTo, projectID);
-        Map<String, Boolean> processedElements = new HashMap<>();
-
-        for (Document doc : responseRelations) { // Results come sorted by date
-            String sourceID = getRelationLabel(Queries.getStringFromObjectOrDefault(doc.get(Constants.SOURCEID), ""));
-            String targetID = getRelationLabel(Queries.getStringFromObjectOrDefault(doc.get(Constants.TARGETID), ""));
-            String sourceTargetKey = sourceID+"->"+targetID;
-            String targetType = Queries.getStringFromObjectOrDefault(doc.get(Constants.TARGETTPYE), "");
-
-            if (!processedElements.containsKey(sourceTargetKey) && checkTargetType(targetType)) {
-                String sourceValue = Queries.getStringFromObjectOrDefault(doc.get(Constants.VALUE), "");
-                String targetValue = Queries.getStringFromObjectOrDefault(doc.get(Constants.TARGETVALUE), "");
-                String sourceType = Queries.getStringFromObjectOrDefault(doc.get(Constants.SOURCETYPE), "");
-                String sourceCategory = Queries.getStringFromObjectOrDefault(doc.get(Constants.SOURCELABEL), "");
-                String weight = Queries.getStringFromObjectOrDefault(doc.get(Constants.WEIGHT), "");
-
-                SourceRelationDTO sourceDTO = new SourceRelationDTO(sourceID, sourceValue, sourceCategory, sourceType);
-                TargetRelationDTO targetDTO = new TargetRelationDTO(targetID, targetValue, targetType);
-                relationDTO.add(new RelationDTO(weight, sourceDTO, targetDTO));
-                processedElements.put(sourceTargetKey, true);
-            }
-        }
-        return relationDTO;
+        LocalDate dateFrom = dateTo.minusDays(RELATIONS_WINDOW_DAYS);
+        // The newest relation of each (source, target) pair, de-duplicated by the server
+        return getRelationDTOs(Queries.getDistinctRelations(dateFrom, dateTo, projectID));
     }
 
     /**
-    * This method returns the element identifier present in some fields from the relations documents.
+    * This method builds the RelationDTOs of the relations documents.
     *
-    * @param elementID The value of the fields sourceId or targetId.
+    * @param responseRelations The relations, one for each (source, target) pair.
     *
-    * @return The identifier of the element (string) extrated from the provided parameter.
+    * @return A list of this relations (RelationDTO).
     */
-    private static String getRelationLabel(String elementID) {
-        try {
-            return elementID.split("-")[1];
-        }
-        catch (Exception e) {
-            return "ERROR";
+    private static ArrayList<RelationDTO> getRelationDTOs(List<Document> responseRelations) {
+        ArrayList<RelationDTO> relationDTO = new ArrayList<>();
+        for (Document doc : responseRelations) { // Results come sorted by date
+            String targetType = Queries.getStringFromObjectOrDefault(doc.get(Constants.TARGETTPYE), "");
+            if (!checkTargetType(targetType)) continue;
+
+            String sourceID = Queries.getStringFromObjectOrDefault(doc.get(Constants.SOURCE_ELEMENT), "ERROR");
+            String targetID = Queries.getStringFromObjectOrDefault(doc.get(Constants.TARGET_ELEMENT), "ERROR");
+            String sourceValue = Queries.getStringFromObjectOrDefault(doc.get(Constants.VALUE), "");
+            String targetValue = Queries.getStringFromObjectOrDefault(doc.get(Constants.TARGETVALUE), "");
+            String sourceType = Queries.getStringFromObjectOrDefault(doc.get(Constants.SOURCETYPE), "");
+            String sourceCategory = Queries.getStringFromObjectOrDefault(doc.get(Constants.SOURCELABEL), "");
+            String weight = Queries.getStringFromObjectOrDefault(doc.get(Constants.WEIGHT), "");
+
+            SourceRelationDTO sourceDTO = new SourceRelationDTO(sourceID, sourceValue, sourceCategory, sourceType);
+            TargetRelationDTO targetDTO = new TargetRelationDTO(targetID, targetValue, targetType);
+            relationDTO.add(new RelationDTO(weight, sourceDTO, targetDTO));
         }
+        return relationDTO;
     }
 
     /**
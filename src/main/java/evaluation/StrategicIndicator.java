@@ -3,9 +3,13 @@ package evaluation;
 import DTOs.*;
 import com.mongodb.client.result.UpdateResult;
 import org.bson.Document;
+import util.BatchWriteResult;
 import util.Common;
 import util.Constants;
+import util.Downsampling;
 import util.FormattedDates;
+import util.IncrementalEvaluations;
+import util.Page;
 import util.Queries;
 
 import java.time.LocalDate;
@@ -14,7 +18,6 @@ import java.util.List;
 import java.util.Map;
 
 public class StrategicIndicator {
-    private static Map<String, String> IDNames;
 
     /**
     * This method returns the list of the strategic indicators and the last evaluation.
@@ -26,11 +29,23 @@ public class StrategicIndicator {
     */
     public static List<StrategicIndicatorEvaluationDTO> getEvaluations(String projectId) {
         List<StrategicIndicatorEvaluationDTO> ret;
-        List<Document> sr = Queries.getLatest(projectId,Constants.QMLevel.strategic_indicators);
-        ret = Common.processStrategicIndicatorsBuckets(sr);
+        ret = Queries.getLatest(Constants.QMLevel.strategic_indicators, projectId, "all", StrategicIndicatorEvaluationDTO.class);
         return ret;
     }
 
+    /**
+    * This method returns the list of the strategic indicators and their last evaluation, retrieving only the fields
+    * of the given profile (e.g. ReadProfile.values for charts, ReadProfile.header for names and descriptions).
+    *
+    * @param projectId Identifier of the project.
+    * @param profile Fields of the evaluations to be retrieved.
+    *
+    * @return The list of strategic indicators' evaluations.
+    */
+    public static List<StrategicIndicatorEvaluationDTO> getEvaluations(String projectId, Constants.ReadProfile profile) {
+        return Queries.getLatest(Constants.QMLevel.strategic_indicators, projectId, "all", profile, StrategicIndicatorEvaluationDTO.class);
+    }
+
     /**
     * This method returns the last evaluation of the strategic indicator passed as a parameter.
     * The evaluation contains the evaluation date and value.
@@ -43,8 +58,7 @@ public class StrategicIndicator {
     public static StrategicIndicatorEvaluationDTO getSingleEvaluation(String projectId, String strategicIndicatorId) {
         List<StrategicIndicatorEvaluationDTO> ret;
         StrategicIndicatorEvaluationDTO strategicIndicatorEvaluationDTO = null;
-        List<Document> sr = Queries.getLatestElement(projectId, Constants.QMLevel.strategic_indicators, strategicIndicatorId);
-        ret = Common.processStrategicIndicatorsBuckets(sr);
+        ret = Queries.getLatestElement(projectId, Constants.QMLevel.strategic_indicators, strategicIndicatorId, StrategicIndicatorEvaluationDTO.class);
         if (!ret.isEmpty()) strategicIndicatorEvaluationDTO = ret.get(0);
         return strategicIndicatorEvaluationDTO;
     }
@@ -61,11 +75,100 @@ public class StrategicIndicator {
     */
     public static List<StrategicIndicatorEvaluationDTO> getEvaluations(String projectId, LocalDate from, LocalDate to) {
         List<StrategicIndicatorEvaluationDTO> ret;
-        List<Document> sr = Queries.getRanged(Constants.QMLevel.strategic_indicators, projectId, from, to);
-        ret = Common.processStrategicIndicatorsBuckets(sr);
+        ret = Queries.getRanged(Constants.QMLevel.strategic_indicators, projectId, "all", from, to, StrategicIndicatorEvaluationDTO.class);
         return ret;
     }
 
+    /**
+    * This method returns the list of the strategic indicators and the evaluations belonging to a specific period defined by the
+    * parameters from and to, retrieving only the fields of the given profile.
+    *
+    * @param projectId Identifier of the project.
+    * @param from Initial date from the range we are querying.
+    * @param to Final date from the range we are querying.
+    * @param profile Fields of the evaluations to be retrieved.
+    *
+    * @return The list of strategic indicators' evaluations.
+    */
+    public static List<StrategicIndicatorEvaluationDTO> getEvaluations(String projectId, LocalDate from, LocalDate to, Constants.ReadProfile profile) {
+        return Queries.getRanged(Constants.QMLevel.strategic_indicators, projectId, "all", from, to, profile, StrategicIndicatorEvaluationDTO.class);
+    }
+
+    /**
+    * This method returns the list of the strategic indicators and the evaluations belonging to a specific period defined by the
+    * parameters from and to, downsampled to one evaluation per time bucket (e.g. one per week).
+    *
+    * @param projectId Identifier of the project.
+    * @param from Initial date from the range we are querying.
+    * @param to Final date from the range we are querying.
+    * @param downsampling Time buckets and value of each bucket.
+    *
+    * @return The list of strategic indicators' evaluations.
+    */
+    public static List<StrategicIndicatorEvaluationDTO> getDownsampledEvaluations(String projectId, LocalDate from, LocalDate to, Downsampling downsampling) {
+        return Queries.getRanged(Constants.QMLevel.strategic_indicators, projectId, "all", from, to, Constants.ReadProfile.full,
+            downsampling, StrategicIndicatorEvaluationDTO.class);
+    }
+
+    /**
+    * This method returns a page of the list of the strategic indicators and their last evaluation, sorted by identifier.
+    *
+    * @param projectId Identifier of the project.
+    * @param pageSize Maximum number of strategic indicators of the page.
+    * @param pageToken Token returned by the previous page, or null to get the first page.
+    *
+    * @return The page of evaluations, with the token of the next page (if any).
+    */
+    public static Page<StrategicIndicatorEvaluationDTO> getEvaluationsPage(String projectId, int pageSize, String pageToken) {
+        return Queries.getLatestPage(Constants.QMLevel.strategic_indicators, projectId, "all", Constants.ReadProfile.full, pageSize,
+            pageToken, StrategicIndicatorEvaluationDTO.class);
+    }
+
+    /**
+    * This method returns a page of the list of the strategic indicators and the evaluations belonging to a specific period defined
+    * by the parameters from and to, sorted by identifier and evaluation date. The evaluations of an element may be
+    * split between consecutive pages.
+    *
+    * @param projectId Identifier of the project.
+    * @param from Initial date from the range we are querying.
+    * @param to Final date from the range we are querying.
+    * @param pageSize Maximum number of evaluations of the page.
+    * @param pageToken Token returned by the previous page, or null to get the first page.
+    *
+    * @return The page of evaluations, with the token of the next page (if any).
+    */
+    public static Page<StrategicIndicatorEvaluationDTO> getEvaluationsPage(String projectId, LocalDate from, LocalDate to, int pageSize,
+                                                                           String pageToken) {
+        return Queries.getRangedPage(Constants.QMLevel.strategic_indicators, projectId, "all", from, to, Constants.ReadProfile.full,
+            pageSize, pageToken, StrategicIndicatorEvaluationDTO.class);
+    }
+
+    /**
+    * This method returns the list of the strategic indicators and the evaluations belonging to a period as a result set that is
+    * kept up to date by polling only the evaluations added since the previous poll (see IncrementalEvaluations).
+    *
+    * @param projectId Identifier of the project.
+    *
+    * @return The incremental result set, which is empty until the first poll.
+    */
+    public static IncrementalEvaluations<StrategicIndicatorEvaluationDTO> getIncrementalEvaluations(String projectId) {
+        return new IncrementalEvaluations<>((from, to) -> getEvaluations(projectId, from, to));
+    }
+
+    /**
+    * This method returns the list of the strategic indicators and the evaluations belonging to a period as a result set that is
+    * kept up to date by polling only the evaluations added since the previous poll, retrieving only the fields of
+    * the given profile.
+    *
+    * @param projectId Identifier of the project.
+    * @param profile Fields of the evaluations to be retrieved.
+    *
+    * @return The incremental result set, which is empty until the first poll.
+    */
+    public static IncrementalEvaluations<StrategicIndicatorEvaluationDTO> getIncrementalEvaluations(String projectId, Constants.ReadProfile profile) {
+        return new IncrementalEvaluations<>((from, to) -> getEvaluations(projectId, from, to, profile));
+    }
+
     /**
     * The external repository have two identifiers for each element, the field used by the repository (hard ID) and the
     * id and evaluation date used by the "users".
@@ -118,6 +221,57 @@ public class StrategicIndicator {
         return response;
     }
 
+    /**
+    * This method updates the evaluations of a list of strategic indicators, creating the ones that don't exist, with
+    * unordered bulk writes of at most batchSize evaluations each. Every evaluation of each strategic indicator is
+    * written with the same data as setStrategicIndicatorEvaluation, together with the estimation in the same
+    * position, if any.
+    *
+    * @param projectId Identifier of the project.
+    * @param strategicIndicators DTOs with the strategic indicators and their evaluations.
+    * @param batchSize Maximum number of evaluations sent in each bulk write.
+    *
+    * @return The result of each evaluation, identified by its hard ID.
+    */
+    public static BatchWriteResult setStrategicIndicatorEvaluations(String projectId,
+                                                                    List<StrategicIndicatorEvaluationDTO> strategicIndicators,
+                                                                    int batchSize) {
+        List<String> hardIDs = new ArrayList<>();
+        List<Document> updates = new ArrayList<>();
+        for (StrategicIndicatorEvaluationDTO strategicIndicator : strategicIndicators) {
+            List<EstimationEvaluationDTO> estimations = strategicIndicator.getEstimation();
+            int index = 0;
+            for (EvaluationDTO evaluation : strategicIndicator.getEvaluations()) {
+                EstimationEvaluationDTO estimation = null;
+                if (estimations != null && index < estimations.size()) estimation = estimations.get(index);
+                index++;
+
+                String elastic_entry_ID = getHardID(projectId, strategicIndicator.getID(), evaluation.getEvaluationDate());
+                hardIDs.add(elastic_entry_ID);
+                updates.add(Queries.buildStrategicIndicatorUpdate(
+                    elastic_entry_ID, projectId, strategicIndicator.getID(),
+                    strategicIndicator.getName(), strategicIndicator.getDescription(),
+                    evaluation.getEvaluationDate(), evaluation.getValue(),
+                    evaluation.getRationale(), estimation,
+                    evaluation.getMissingElements(), evaluation.getMismatchDays()));
+            }
+        }
+        return Queries.setValues(Constants.QMLevel.strategic_indicators, projectId, hardIDs, updates, batchSize);
+    }
+
+    /**
+    * This method updates the evaluations of a list of strategic indicators using the default batch size.
+    *
+    * @param projectId Identifier of the project.
+    * @param strategicIndicators DTOs with the strategic indicators and their evaluations.
+    *
+    * @return The result of each evaluation, identified by its hard ID.
+    */
+    public static BatchWriteResult setStrategicIndicatorEvaluations(String projectId,
+                                                                    List<StrategicIndicatorEvaluationDTO> strategicIndicators) {
+        return setStrategicIndicatorEvaluations(projectId, strategicIndicators, Constants.DEFAULT_WRITE_BATCH_SIZE);
+    }
+
     /**
     * This method returns the list of the strategic indicators. For each strategic indicator, it returns the list of
     * factors associated to it and their last evaluation. The evaluation contains the evaluation date and value.
@@ -134,7 +288,6 @@ public class StrategicIndicator {
             StrategicIndicatorFactorEvaluationDTO indicatorFactors = getFactorsEvaluations(projectId, indicatorID);
             ret.add(indicatorFactors);
         }
-        resetIndicatorsIDNames();
         return ret;
     }
 
@@ -157,7 +310,6 @@ public class StrategicIndicator {
             StrategicIndicatorFactorEvaluationDTO indicatorFactors = getFactorsEvaluations(projectId, indicatorID, from, to);
             ret.add(indicatorFactors);
         }
-        resetIndicatorsIDNames();
         return ret;
     }
 
@@ -172,8 +324,7 @@ public class StrategicIndicator {
     *         of the factors impacting on this strategic indicator.
     */
     public static StrategicIndicatorFactorEvaluationDTO getFactorsEvaluations(String projectId, String strategicIndicatorID) {
-        List<Document> sr = Queries.getLatest(Constants.QMLevel.factors, projectId, strategicIndicatorID);
-        List<FactorEvaluationDTO> factorsEval = Common.processFactorsBuckets(sr);
+        List<FactorEvaluationDTO> factorsEval = Queries.getLatest(Constants.QMLevel.factors, projectId, strategicIndicatorID, FactorEvaluationDTO.class);
         StrategicIndicatorEvaluationDTO strategicIndicatorEvaluationDTO = getSingleEvaluation(projectId, strategicIndicatorID);
         return new StrategicIndicatorFactorEvaluationDTO(strategicIndicatorEvaluationDTO, factorsEval);
     }
@@ -195,8 +346,7 @@ public class StrategicIndicator {
                                                                               String strategicIndicatorID,
                                                                               LocalDate from,
                                                                               LocalDate to) {
-        List<Document> sr = Queries.getRanged(Constants.QMLevel.factors, projectId, strategicIndicatorID, from,to);
-        List<FactorEvaluationDTO> factorsEval = Common.processFactorsBuckets(sr);
+        List<FactorEvaluationDTO> factorsEval = Queries.getRanged(Constants.QMLevel.factors, projectId, strategicIndicatorID, from, to, FactorEvaluationDTO.class);
         StrategicIndicatorEvaluationDTO strategicIndicatorEvaluationDTO = getSingleEvaluation(projectId, strategicIndicatorID);
         return new StrategicIndicatorFactorEvaluationDTO(strategicIndicatorEvaluationDTO, factorsEval);
     }
@@ -212,11 +362,11 @@ public class StrategicIndicator {
     *         the evaluation of the metrics used for computing this factor.
     */
     public static List<FactorMetricEvaluationDTO> getMetricsEvaluations(String projectId, String strategicIndicatorID) {
-        List <FactorMetricEvaluationDTO> ret = new ArrayList<>();
-        StrategicIndicatorFactorEvaluationDTO siFactors = getFactorsEvaluations(projectId, strategicIndicatorID);
-        for (FactorEvaluationDTO factor : siFactors.getFactors())
-            ret.add(new FactorMetricEvaluationDTO(factor, Factor.getMetricsEvaluations(factor.getProject(), factor.getID()).getMetrics()));
-        return ret;
+        List<FactorEvaluationDTO> factorsEval = Queries.getLatest(Constants.QMLevel.factors, projectId, strategicIndicatorID, FactorEvaluationDTO.class);
+        if (factorsEval.isEmpty()) return new ArrayList<>();
+        Map<String, List<MetricEvaluationDTO>> metricsEval = Common.processMetricsBucketsByParent(
+            Queries.getLatestByParent(Constants.QMLevel.metrics, projectId, getIDs(factorsEval)));
+        return joinMetricsEvaluations(factorsEval, metricsEval);
     }
 
     /**
@@ -236,13 +386,39 @@ public class StrategicIndicator {
                                                                         String strategicIndicatorID,
                                                                         LocalDate from,
                                                                         LocalDate to) {
-        List <FactorMetricEvaluationDTO> ret = new ArrayList<>();
-        StrategicIndicatorFactorEvaluationDTO siFactors = getFactorsEvaluations(projectId, strategicIndicatorID, from, to);
-        for (FactorEvaluationDTO factor : siFactors.getFactors())
-            ret.add(new FactorMetricEvaluationDTO(factor, Factor.getMetricsEvaluations(factor.getProject(),factor.getID(), from, to).getMetrics()));
+        List<FactorEvaluationDTO> factorsEval = Queries.getRanged(Constants.QMLevel.factors, projectId, strategicIndicatorID, from, to, FactorEvaluationDTO.class);
+        if (factorsEval.isEmpty()) return new ArrayList<>();
+        Map<String, List<MetricEvaluationDTO>> metricsEval = Common.processMetricsBucketsByParent(
+            Queries.getRangedByParent(Constants.QMLevel.metrics, projectId, getIDs(factorsEval), from, to));
+        return joinMetricsEvaluations(factorsEval, metricsEval);
+    }
+
+    /**
+    * Join the factors' evaluations of a strategic indicator with the evaluations of their metrics, keeping
+    * the order of the factors.
+    *
+    * @param factorsEval The factors' evaluations.
+    * @param metricsEval The metrics' evaluations of each factor.
+    *
+    * @return The list of the evaluation of the factors. For each factor, the evaluation of its metrics.
+    */
+    private static List<FactorMetricEvaluationDTO> joinMetricsEvaluations(List<FactorEvaluationDTO> factorsEval,
+                                                                          Map<String, List<MetricEvaluationDTO>> metricsEval) {
+        List<FactorMetricEvaluationDTO> ret = new ArrayList<>();
+        for (FactorEvaluationDTO factor : factorsEval) {
+            List<MetricEvaluationDTO> metrics = metricsEval.get(factor.getID());
+            if (metrics == null) metrics = new ArrayList<>();
+            ret.add(new FactorMetricEvaluationDTO(factor, metrics));
+        }
         return ret;
     }
 
+    private static List<String> getIDs(List<FactorEvaluationDTO> factorsEval) {
+        List<String> ids = new ArrayList<>();
+        for (FactorEvaluationDTO factor : factorsEval) ids.add(factor.getID());
+        return ids;
+    }
+
     /**
     * This method returns a map containing, for each existing strategic indicator in a project, its identifier and name.
     *
@@ -251,18 +427,14 @@ public class StrategicIndicator {
     * @return A Map<ID, name> for each existing strategic indicator in the project.
     */
     private static Map<String, String> getIndicatorsIDNames(String projectId) {
-        if (IDNames == null) {
-            IDNames = Common.getIDNames(projectId, Constants.QMLevel.strategic_indicators);
-            return IDNames;
-        }
-        return IDNames;
+        return Common.getIDNames(projectId, Constants.QMLevel.strategic_indicators);
     }
 
     /**
-    * Reset the map which stores the strategic indicators' identifiers and names.
+    * Reset the cached strategic indicators' identifiers and names, which are reloaded in the next access.
     */
     public static void resetIndicatorsIDNames() {
-        IDNames = null;
+        Common.resetIDNames(Constants.QMLevel.strategic_indicators);
     }
 
 }
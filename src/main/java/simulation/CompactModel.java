@@ -0,0 +1,283 @@
+package simulation;
+
+import DTOs.ElemenEvaluationtDTO;
+import DTOs.EvaluationDTO;
+import DTOs.FactorEvaluationDTO;
+import DTOs.MetricEvaluationDTO;
+import org.bson.Document;
+import util.Queries;
+
+import java.util.*;
+import java.util.logging.Logger;
+
+/**
+* Alternative engine of Model for large quality models. The metric and factor IDs are interned to dense ints and
+* the metric -> factor weights are stored in a CSR (compressed sparse row) matrix of primitive arrays, so the
+* factors are recomputed in a loop without lookups, boxing nor allocations. It gives the same results as
+* Model.simulate().
+*/
+public class CompactModel {
+
+	Logger log = Logger.getLogger(this.getClass().getName());
+
+	// Interned IDs: metricId -> metric index, factorId -> factor index
+	private final Map<String, Integer> metricIndexes = new HashMap<>();
+	private final Map<String, Integer> factorIndexes = new HashMap<>();
+	private final MetricEvaluationDTO[] metricDTOs;
+	private final FactorEvaluationDTO[] factorDTOs;
+
+	private final double[] metricValues;
+	private final double[] factorValues;
+
+	// CSR matrix: the weights of factor f are weights[factorStart[f] .. factorStart[f + 1]), of the metrics sourceMetrics[...]
+	private final int[] factorStart;
+	private final int[] sourceMetrics;
+	private final double[] weights;
+
+	// Transposed CSR: the factors influenced by metric m are influencedFactors[metricStart[m] .. metricStart[m + 1])
+	private final int[] metricStart;
+	private final int[] influencedFactors;
+
+	// Factors to recompute, without duplicates
+	private final boolean[] dirty;
+	private final int[] changeFactors;
+	private int changeCount = 0;
+
+	// Recomputed factors whose DTO has not been updated yet
+	private final boolean[] stale;
+	private final int[] staleFactors;
+	private int staleCount = 0;
+
+	/**
+	* Create the CompactModel on the same data as Model.
+	* Assumption: MetricEvaluationDTOs and FactorEvaluationDTOs contain exactly
+	* one EvaluationDTO for a specific evaluationDate.
+	*
+	* @param metrics List of MetricEvaluationDTOs for evaluationDate and projectId.
+	* @param factors List of FactorEvaluationDTOs for evaluationDate and projectId.
+	* @param relations SearchResponse of relation query for metric-factor relations, evaluationDate, and projectId.
+	*/
+	public CompactModel( List<MetricEvaluationDTO> metrics, List<FactorEvaluationDTO> factors, List<Document> relations ) {
+
+		Map<String, MetricEvaluationDTO> mapMetricIdDTO = new HashMap<>();
+		for ( MetricEvaluationDTO medto : metrics ) {
+			if (medto.getEvaluations().size() > 0)
+				mapMetricIdDTO.put(medto.getEvaluations().get(0).getID(), medto);
+		}
+		Map<String, FactorEvaluationDTO> mapFactorIdDTO = new HashMap<>();
+		for ( FactorEvaluationDTO fedto : factors ) {
+			if (fedto.getEvaluations().size() > 0)
+				mapFactorIdDTO.put( fedto.getEvaluations().get(0).getID(), fedto );
+		}
+
+		metricDTOs = new MetricEvaluationDTO[mapMetricIdDTO.size()];
+		metricValues = new double[metricDTOs.length];
+		for ( Map.Entry<String, MetricEvaluationDTO> entry : mapMetricIdDTO.entrySet() ) {
+			int m = metricIndexes.size();
+			metricIndexes.put(entry.getKey(), m);
+			metricDTOs[m] = entry.getValue();
+			metricValues[m] = getValue(entry.getValue());
+		}
+
+		// Same iteration order as Model.getFactors(), and the same factor -> metric -> weight maps as Model.impacts
+		factorDTOs = new FactorEvaluationDTO[mapFactorIdDTO.size()];
+		factorValues = new double[factorDTOs.length];
+		for ( Map.Entry<String, FactorEvaluationDTO> entry : mapFactorIdDTO.entrySet() ) {
+			int f = factorIndexes.size();
+			factorIndexes.put(entry.getKey(), f);
+			factorDTOs[f] = entry.getValue();
+			factorValues[f] = getValue(entry.getValue());
+		}
+		Map<String, Map<String, Double>> impacts = readRelations(relations, mapMetricIdDTO, mapFactorIdDTO);
+
+		// The weights of each factor keep the iteration order of Model.impacts, so the sums are rounded alike
+		factorStart = new int[factorDTOs.length + 1];
+		int[] metricDegree = new int[metricDTOs.length];
+		int edges = 0;
+		for ( Map<String, Double> row : impacts.values() ) edges += row.size();
+		sourceMetrics = new int[edges];
+		weights = new double[edges];
+		int edge = 0;
+		for ( int f = 0; f < factorDTOs.length; ++f ) {
+			factorStart[f] = edge;
+			Map<String, Double> row = impacts.get(factorDTOs[f].getEvaluations().get(0).getID());
+			if (row == null) continue;
+			for ( Map.Entry<String, Double> entry : row.entrySet() ) {
+				int m = metricIndexes.get(entry.getKey());
+				sourceMetrics[edge] = m;
+				weights[edge] = entry.getValue();
+				metricDegree[m]++;
+				edge++;
+			}
+		}
+		factorStart[factorDTOs.length] = edge;
+
+		metricStart = new int[metricDTOs.length + 1];
+		for ( int m = 0; m < metricDTOs.length; ++m ) metricStart[m + 1] = metricStart[m] + metricDegree[m];
+		influencedFactors = new int[edges];
+		int[] next = Arrays.copyOf(metricStart, metricDTOs.length);
+		for ( int f = 0; f < factorDTOs.length; ++f ) {
+			for ( int e = factorStart[f]; e < factorStart[f + 1]; ++e )
+				influencedFactors[next[sourceMetrics[e]]++] = f;
+		}
+
+		dirty = new boolean[factorDTOs.length];
+		changeFactors = new int[factorDTOs.length];
+		stale = new boolean[factorDTOs.length];
+		staleFactors = new int[factorDTOs.length];
+	}
+
+	/**
+	* Simulate change of a metric value:
+	* - Lookup the metric index.
+	* - Change EvaluationDTO to simulated value.
+	* - Marks the influenced factors to be recomputed.
+	*
+	* @param metricId The metricId.
+	* @param value The simulated value.
+	*/
+	public void setMetric( String metricId, Double value ) {
+		Integer m = metricIndexes.get(metricId);
+		if (m == null)
+			throw new IllegalArgumentException( "MetricEvaluationDTO not found: " + metricId );
+
+		setEvaluationDTO(value, metricDTOs[m]);
+		// Model reads the value back from the DTO, which stores it as a float
+		metricValues[m] = value.floatValue();
+		for ( int e = metricStart[m]; e < metricStart[m + 1]; ++e ) {
+			int f = influencedFactors[e];
+			if (!dirty[f]) {
+				dirty[f] = true;
+				changeFactors[changeCount++] = f;
+			}
+		}
+	}
+
+	/**
+	* Simulate change of for a list of metrics (see setMetric).
+	*
+	* @param metrics The list of metrics to be simulated (metricId and simulated value).
+	*/
+	public void setMetrics (Map <String, Double> metrics){
+		for (Map.Entry<String, Double> entry : metrics.entrySet())
+			setMetric(entry.getKey(), entry.getValue());
+	}
+
+	/**
+	* Simulate change of a metric value:
+	* - Reevaluate the factors influenced by the metrics set since the previous call.
+	*
+	* @return Recomputed factors.
+	*/
+	public Collection<FactorEvaluationDTO> simulate() {
+		simulateValues();
+		return getFactors();
+	}
+
+	/**
+	* Reevaluate the factors influenced by the metrics set since the previous call, without allocating nor
+	* building their DTOs, which are updated by the next call to getFactors (see getFactorValue).
+	*/
+	public void simulateValues() {
+		for ( int i = 0; i < changeCount; ++i ) {
+			int f = changeFactors[i];
+			double sumWeights = 0.0;
+			double sumValues = 0.0;
+			for ( int e = factorStart[f]; e < factorStart[f + 1]; ++e ) {
+				double weight = weights[e];
+				sumWeights += weight;
+				sumValues += metricValues[sourceMetrics[e]] * weight;
+			}
+			// Stored as a float, like the EvaluationDTO
+			factorValues[f] = (float) (sumValues / sumWeights);
+			dirty[f] = false;
+			if (!stale[f]) {
+				stale[f] = true;
+				staleFactors[staleCount++] = f;
+			}
+		}
+		changeCount = 0;
+	}
+
+	/**
+	* Return the actual Collection of FactorEvaluationDTOs.
+	*
+	* @return The evaluations associated to each factor.
+	*/
+	public Collection<FactorEvaluationDTO> getFactors() {
+		for ( int i = 0; i < staleCount; ++i ) {
+			int f = staleFactors[i];
+			setEvaluationDTO(factorValues[f], factorDTOs[f]);
+			stale[f] = false;
+		}
+		staleCount = 0;
+		return Collections.unmodifiableList(Arrays.asList(factorDTOs));
+	}
+
+	/**
+	* Return the actual value of a factor, without building its DTO.
+	*
+	* @param factorId The factorId (hard ID of its evaluation).
+	*
+	* @return The value of the factor, including the changes recomputed by the last call to simulate.
+	*/
+	public double getFactorValue( String factorId ) {
+		Integer f = factorIndexes.get(factorId);
+		if (f == null)
+			throw new IllegalArgumentException( "FactorEvaluationDTO not found: " + factorId );
+		return factorValues[f];
+	}
+
+	/**
+	* Read relations into the same factorId -> metricId -> weight maps as Model, skipping the inconsistent ones.
+	*/
+	private Map<String, Map<String, Double>> readRelations( List<Document> relations,
+															Map<String, MetricEvaluationDTO> mapMetricIdDTO,
+															Map<String, FactorEvaluationDTO> mapFactorIdDTO ) {
+		Map<String, Map<String, Double>> impacts = new HashMap<>();
+		for ( Document doc : relations ) {
+			String metricId = Queries.getStringFromObject(doc.get("sourceId"));
+			String factorId = Queries.getStringFromObject(doc.get("targetId"));
+			Double weight = getWeight(doc.get("weight"));
+
+			if ( !mapMetricIdDTO.containsKey(metricId) || !mapFactorIdDTO.containsKey(factorId) ) {
+				log.warning("Inconsistent relation: " + metricId + "->" + factorId + " not read from API. skipped.");
+				continue;
+			}
+			Map<String, Double> innerMap = impacts.computeIfAbsent(factorId, k -> new HashMap<>());
+			if ( innerMap.containsKey(metricId) )
+				log.warning("relation: " + metricId + "->" + factorId + " already added to impacts. skipped.");
+			else innerMap.put(metricId, weight);
+		}
+		return impacts;
+	}
+
+	/**
+	* The value of an evaluation, where an evaluation without value counts as 0 (as in Model.simulate).
+	*/
+	private static double getValue(ElemenEvaluationtDTO elementEvaluationDTO) {
+		Float value = elementEvaluationDTO.getEvaluations().get(0).getValue();
+		return value != null ? value.doubleValue() : 0.0;
+	}
+
+	/**
+	* In some cases relations weight is an Integer instead of a Double.
+	*/
+	private static double getWeight(Object weight) {
+		if ( weight instanceof Integer ) return ( (Integer) weight ).doubleValue();
+		else return ( Double ) weight;
+	}
+
+	/**
+	* Modify the value of the first (and supposedly, only) evaluation in the provided DTO.
+	*/
+	private static void setEvaluationDTO(double value, ElemenEvaluationtDTO elementEvaluationDTO) {
+		EvaluationDTO eDTO = elementEvaluationDTO.getEvaluations().get(0);
+		EvaluationDTO simulated = new EvaluationDTO(eDTO.getID(), eDTO.getDatasource(),
+			eDTO.getEvaluationDate(), (float) value, eDTO.getRationale());
+		List<EvaluationDTO> leDTO = new ArrayList<>();
+		leDTO.add(simulated);
+		elementEvaluationDTO.setEvaluations(leDTO);
+	}
+
+}
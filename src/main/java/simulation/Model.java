@@ -4,6 +4,7 @@ import DTOs.ElemenEvaluationtDTO;
 import DTOs.EvaluationDTO;
 import DTOs.FactorEvaluationDTO;
 import DTOs.MetricEvaluationDTO;
+import DTOs.StrategicIndicatorEvaluationDTO;
 import org.bson.Document;
 import util.Queries;
 
@@ -16,6 +17,10 @@ public class Model {
 
 	private Map<String, FactorEvaluationDTO> mapFactorIdDTO = new HashMap<>();
 	private Map<String, MetricEvaluationDTO> mapMetricIdDTO = new HashMap<>();
+	// Keyed by element ID: the hard IDs of the strategic indicators (SI-date) lack the project of the relations
+	private Map<String, StrategicIndicatorEvaluationDTO> mapSIIdDTO = new HashMap<>();
+	// Factor element ID -> factorId (hard ID), to resolve the sources of the factor-strategic indicator relations
+	private Map<String, String> factorHardIds = new HashMap<>();
 
 	private Set<String> relationMetricIdSet = new HashSet<>();
 	private Set<String> relationFactorIdSet = new HashSet<>();
@@ -29,6 +34,15 @@ public class Model {
 	// Set of affected factors
 	Set<String> changeFactors = new HashSet<>();
 
+	// Records which strategic indicatorIds (unique) are influenced by a factorId
+	private Map<String, Set<String>> influencedIndicators = new HashMap<>();
+
+	// StrategicIndicatorID -> FactorID -> Weight
+	Map< String, Map< String, Double > > indicatorImpacts = new HashMap<>();
+
+	// Set of affected strategic indicators
+	Set<String> changeIndicators = new HashSet<>();
+
 	/**
 	* Create Model on metrics / factors (DTOs), and relations List of Document (LD-eval).
 	* Assumption: MetricEvaluationDTOs and FactorEvaluationDTOs contain exactly
@@ -39,6 +53,23 @@ public class Model {
 	* @param relations SearchResponse of relation query for metric-factor relations, evaluationDate, and projectId.
 	*/
 	public Model( List<MetricEvaluationDTO> metrics, List<FactorEvaluationDTO> factors, List<Document> relations ) {
+		this(metrics, factors, relations, new ArrayList<>(), new ArrayList<>());
+	}
+
+	/**
+	* Create Model on metrics / factors / strategic indicators (DTOs), and relations List of Document (LD-eval).
+	* Assumption: MetricEvaluationDTOs, FactorEvaluationDTOs and StrategicIndicatorEvaluationDTOs contain exactly
+	* one EvaluationDTO for a specific evaluationDate.
+	*
+	* @param metrics List of MetricEvaluationDTOs for evaluationDate and projectId.
+	* @param factors List of FactorEvaluationDTOs for evaluationDate and projectId.
+	* @param relations SearchResponse of relation query for metric-factor relations, evaluationDate, and projectId.
+	* @param indicators List of StrategicIndicatorEvaluationDTOs for evaluationDate and projectId.
+	* @param indicatorRelations SearchResponse of relation query for factor-strategic indicator relations,
+	*                           evaluationDate, and projectId.
+	*/
+	public Model( List<MetricEvaluationDTO> metrics, List<FactorEvaluationDTO> factors, List<Document> relations,
+				  List<StrategicIndicatorEvaluationDTO> indicators, List<Document> indicatorRelations ) {
 
 		for ( MetricEvaluationDTO medto : metrics ) {
 			if (medto.getEvaluations().size() > 0)
@@ -46,11 +77,19 @@ public class Model {
 		}
 		
 		for ( FactorEvaluationDTO fedto : factors ) {
-			if (fedto.getEvaluations().size() > 0)
+			if (fedto.getEvaluations().size() > 0) {
 				this.mapFactorIdDTO.put( fedto.getEvaluations().get(0).getID(), fedto );
+				this.factorHardIds.put( fedto.getID(), fedto.getEvaluations().get(0).getID() );
+			}
+		}
+
+		for ( StrategicIndicatorEvaluationDTO siedto : indicators ) {
+			if (siedto.getEvaluations().size() > 0)
+				this.mapSIIdDTO.put( siedto.getID(), siedto );
 		}
 
 		readRelations(relations);
+		readIndicatorRelations(indicatorRelations);
 	}
 
 	
@@ -89,31 +128,61 @@ public class Model {
 	
 	/**
 	* Simulate change of a metric value:
-	* - Reevaluate influenced factors.
+	* - Reevaluate the factors influenced by the metrics set since the previous call.
+	* - Reevaluate the strategic indicators influenced by the factors whose value changed.
+	* Both are the weighted average of their sources.
 	*
-	* @return Recomputed factors.
+	* @return Recomputed factors (see getStrategicIndicators for the recomputed strategic indicators).
 	*/
-	public Collection<FactorEvaluationDTO> simulate() {	
+	public Collection<FactorEvaluationDTO> simulate() {
 		for ( String factorId : changeFactors ) {
-			Double sumWeights = 0.0;
-			Double sumValues = 0.0;
-			
-			for ( String sourceMetricId : impacts.get(factorId).keySet() ) {
-				MetricEvaluationDTO source = mapMetricIdDTO.get(sourceMetricId);
-				double metricValue;
-				if (source.getEvaluations().size() > 0)
-					metricValue = source.getEvaluations().get(0).getValue().doubleValue();
-				else metricValue = 0.0;
-				Double weight = impacts.get(factorId).get(sourceMetricId);
-				sumWeights += weight;
-				sumValues += metricValue * weight;
-			}
-			
+			Map<String, Double> weights = impacts.get(factorId);
+			if (weights == null) continue;
+
 			FactorEvaluationDTO feDTO = mapFactorIdDTO.get(factorId);
-			setEvaluationDTO(sumValues / sumWeights, feDTO);
+			Float previous = feDTO.getEvaluations().get(0).getValue();
+			setEvaluationDTO(weightedAverage(weights, mapMetricIdDTO), feDTO);
+
+			// Only the indicators of the factors whose value changed are reevaluated
+			Set<String> indicators = influencedIndicators.get(factorId);
+			if (indicators != null && !Objects.equals(previous, feDTO.getEvaluations().get(0).getValue()))
+				this.changeIndicators.addAll(indicators);
+		}
+		changeFactors.clear();
+
+		for ( String indicatorId : changeIndicators ) {
+			Map<String, Double> weights = indicatorImpacts.get(indicatorId);
+			if (weights != null)
+				setEvaluationDTO(weightedAverage(weights, mapFactorIdDTO), mapSIIdDTO.get(indicatorId));
 		}
+		changeIndicators.clear();
+
 		return mapFactorIdDTO.values();
 	}
+
+	/**
+	* Compute the weighted average of the values of a set of sources.
+	*
+	* @param weights The weight of each source (sourceId -> weight).
+	* @param sources The map of the source DTOs (sourceId -> DTO).
+	*
+	* @return The weighted average, where the sources without evaluation or value count as 0.
+	*/
+	private Double weightedAverage( Map<String, Double> weights, Map<String, ? extends ElemenEvaluationtDTO> sources ) {
+		Double sumWeights = 0.0;
+		Double sumValues = 0.0;
+
+		for ( String sourceId : weights.keySet() ) {
+			ElemenEvaluationtDTO source = sources.get(sourceId);
+			double sourceValue = 0.0;
+			if (source.getEvaluations().size() > 0 && source.getEvaluations().get(0).getValue() != null)
+				sourceValue = source.getEvaluations().get(0).getValue().doubleValue();
+			Double weight = weights.get(sourceId);
+			sumWeights += weight;
+			sumValues += sourceValue * weight;
+		}
+		return sumValues / sumWeights;
+	}
 	
 	/**
 	* Return the actual Collection of FactorEvaluationDTOs.
@@ -123,6 +192,15 @@ public class Model {
 	public Collection<FactorEvaluationDTO> getFactors() {
 		return mapFactorIdDTO.values();
 	}
+
+	/**
+	* Return the actual Collection of StrategicIndicatorEvaluationDTOs, including the changes recomputed by simulate.
+	*
+	* @return The map of evaluations associated to each strategic indicator.
+	*/
+	public Collection<StrategicIndicatorEvaluationDTO> getStrategicIndicators() {
+		return mapSIIdDTO.values();
+	}
 	
 	/**
 	* Read relations:
@@ -180,6 +258,57 @@ public class Model {
 		validate();
 	}
 
+	/**
+	* Read factor -> strategic indicator relations:
+	* - Match the factors and strategic indicators by element ID (sourceElement / targetElement).
+	* - Build Maps influencedIndicators and indicatorImpacts.
+	*
+	* @param relations The queried relations to be built.
+	*/
+	private void readIndicatorRelations(List<Document> relations) {
+		for ( Document doc : relations ) {
+			String factorId = factorHardIds.get(getElementId(doc, "sourceElement", "sourceId"));
+			String indicatorId = getElementId(doc, "targetElement", "targetId");
+			Double weight = getWeight(doc.get("weight"));
+
+			if ( factorId == null || !mapSIIdDTO.containsKey(indicatorId) ) {
+				// Relation between factor and strategic indicator, but one of them not read from API. skipped
+				log.warning("Inconsistent relation: " + doc.get("sourceId") + "->" + indicatorId + " referenced by relation, " +
+					"but not read from API. skipped.");
+				continue;
+			}
+
+			// Fill map influencedIndicators: factorId -> Set<indicatorId>
+			influencedIndicators.computeIfAbsent(factorId, k -> new HashSet<>()).add(indicatorId);
+
+			Map<String, Double> innerMap = indicatorImpacts.computeIfAbsent(indicatorId, k -> new HashMap<>());
+			if ( innerMap.containsKey(factorId) )
+				log.warning("relation: " + factorId + "->" + indicatorId + " already added to impacts. skipped.");
+			else innerMap.put(factorId, weight);
+		}
+	}
+
+	/**
+	* Get the element ID of the source or target of a relation. The relations written without the sourceElement and
+	* targetElement fields only have the hard ID (project-element-yyyy-MM-dd), from which it is extracted.
+	*
+	* @param relation The relation.
+	* @param elementField The field of the element ID (sourceElement or targetElement).
+	* @param idField The field of the hard ID (sourceId or targetId).
+	*
+	* @return The element ID, or the hard ID if it does not have that form.
+	*/
+	private static String getElementId(Document relation, String elementField, String idField) {
+		String elementId = Queries.getStringFromObjectOrDefault(relation.get(elementField), null);
+		if (elementId != null) return elementId;
+		String hardId = Queries.getStringFromObjectOrDefault(relation.get(idField), null);
+		String prefix = Queries.getStringFromObjectOrDefault(relation.get("project"), "") + "-";
+		// The element lies between the project and the "-yyyy-MM-dd" suffix
+		if (hardId != null && hardId.startsWith(prefix) && hardId.length() > prefix.length() + 11)
+			return hardId.substring(prefix.length(), hardId.length() - 11);
+		return hardId;
+	}
+
 	/**
 	* In some cases relations weight is an Integer instead of a Double.
 	*
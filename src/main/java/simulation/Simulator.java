@@ -2,13 +2,18 @@ package simulation;
 
 import DTOs.FactorEvaluationDTO;
 import DTOs.MetricEvaluationDTO;
+import DTOs.StrategicIndicatorEvaluationDTO;
 import evaluation.Factor;
 import evaluation.Metric;
+import evaluation.StrategicIndicator;
 import org.bson.Document;
+import util.Constants;
+import util.Page;
 import util.Queries;
 
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 
@@ -17,21 +22,51 @@ public class Simulator {
 	// Convert String date (like 2019-01-15) into LocalDate
 	final static DateTimeFormatter dtf = DateTimeFormatter.ofPattern("yyyy-MM-dd");
 	
+	/**
+	* Engine built on the metrics, factors and relations fetched by Simulator (Model or CompactModel).
+	*/
+	interface ModelFactory<M> {
+		M create( List<MetricEvaluationDTO> metrics, List<FactorEvaluationDTO> factors, List<Document> relations,
+				  List<StrategicIndicatorEvaluationDTO> indicators, List<Document> indicatorRelations );
+	}
+
 	/**
 	* Fetch data for Model creation, check data is available, and create Model.
+	* The strategic indicators (and their relations) are optional: projects without them only simulate factors.
 	*
-	* @param projectId The ID of the project which owns the metrics and factors of the Model.
-	* @param evaluationDate The date of the metrics and factors evaluation.
+	* @param projectId The ID of the project which owns the metrics, factors and strategic indicators of the Model.
+	* @param evaluationDate The date of the metrics, factors and strategic indicators evaluation.
 	*
 	* @return The created Model with the fetched data.
 	*/
 	public static Model createModel( String projectId, String evaluationDate ) {
+		return createModel( projectId, evaluationDate, true, Model::new );
+	}
+
+	/**
+	* Fetch data for CompactModel creation, check data is available, and create CompactModel.
+	*
+	* @param projectId The ID of the project which owns the metrics and factors of the CompactModel.
+	* @param evaluationDate The date of the metrics and factors evaluation.
+	*
+	* @return The created CompactModel with the fetched data.
+	*/
+	public static CompactModel createCompactModel( String projectId, String evaluationDate ) {
+		return createModel( projectId, evaluationDate, false,
+			( metrics, factors, relations, indicators, indicatorRelations ) -> new CompactModel(metrics, factors, relations) );
+	}
+
+	private static <M> M createModel( String projectId, String evaluationDate, boolean withIndicators,
+									  ModelFactory<M> factory ) {
 
 		LocalDate localEvaluationDate = LocalDate.parse(evaluationDate, dtf);
 
-		List<MetricEvaluationDTO> metrics = Metric.getEvaluations( projectId, localEvaluationDate, localEvaluationDate );
+		// Only the value of the metrics is used by the Model
+		List<MetricEvaluationDTO> metrics = Metric.getEvaluations( projectId, localEvaluationDate, localEvaluationDate,
+			Constants.ReadProfile.values );
 		List<FactorEvaluationDTO> factors = Factor.getEvaluations( projectId, localEvaluationDate, localEvaluationDate );
-		List<Document> relations = Queries.getFactorMetricsRelations(  projectId, evaluationDate );
+		List<Document> relations = Page.readAll( token ->
+			Queries.getFactorMetricsRelationsPage( projectId, evaluationDate, Constants.DEFAULT_PAGE_SIZE, token ) );
 
 		if ( metrics.size() == 0 )
 			throw new IllegalArgumentException("No metrics found for projectId " + projectId + ", evaluationDate " + evaluationDate);
@@ -40,7 +75,16 @@ public class Simulator {
 		if ( relations.size()  == 0 )
 			throw new IllegalArgumentException("No relations found for projectId " + projectId + ", evaluationDate " + evaluationDate);
 
-		return new Model(metrics, factors, relations);
+		List<StrategicIndicatorEvaluationDTO> indicators = new ArrayList<>();
+		List<Document> indicatorRelations = new ArrayList<>();
+		if ( withIndicators ) {
+			indicatorRelations = Page.readAll( token ->
+				Queries.getStrategicIndicatorFactorsRelationsPage( projectId, evaluationDate, Constants.DEFAULT_PAGE_SIZE, token ) );
+			if ( indicatorRelations.size() > 0 )
+				indicators = StrategicIndicator.getEvaluations( projectId, localEvaluationDate, localEvaluationDate );
+		}
+
+		return factory.create(metrics, factors, relations, indicators, indicatorRelations);
 	}
 
 	/**
@@ -54,4 +98,15 @@ public class Simulator {
 		System.out.println();
 	}
 
+	/**
+	* Helper: Print strategic indicator values.
+	*
+	* @param indicators The list of strategic indicator evaluations to be printed.
+	*/
+	public static void strategicIndicatorPrinter( Collection<StrategicIndicatorEvaluationDTO> indicators ) {
+		for ( StrategicIndicatorEvaluationDTO siDTO : indicators )
+			System.out.println(siDTO.getEvaluations().get(0).getID() + ": " + siDTO.getEvaluations().get(0).getValue());
+		System.out.println();
+	}
+
 }
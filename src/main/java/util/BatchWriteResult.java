@@ -0,0 +1,125 @@
+package util;
+
+import com.mongodb.bulk.BulkWriteResult;
+import com.mongodb.bulk.BulkWriteUpsert;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+* Result of writing a set of evaluations with the batch writers. It keeps the status of every evaluation,
+* in the same order as they were provided, together with the aggregated counts.
+*/
+public class BatchWriteResult {
+
+    public enum Status { upserted, matched, failed, unacknowledged }
+
+    private final List<String> ids;
+    private final Status[] statuses;
+    private final String[] errors;
+
+    BatchWriteResult(List<String> ids) {
+        this.ids = new ArrayList<>(ids);
+        this.statuses = new Status[ids.size()];
+        this.errors = new String[ids.size()];
+    }
+
+    /**
+    * Set the status of the evaluations written by a bulk write. The evaluations which have already been marked
+    * as failed keep their status.
+    *
+    * @param from The position of the first evaluation of the bulk write (inclusive).
+    * @param to The position of the last evaluation of the bulk write (exclusive).
+    * @param result The result of the bulk write, whose indexes are relative to from.
+    */
+    void setBatchResult(int from, int to, BulkWriteResult result) {
+        if (!result.wasAcknowledged()) {
+            for (int i = from; i < to; i++)
+                if (statuses[i] != Status.failed) statuses[i] = Status.unacknowledged;
+            return;
+        }
+        for (BulkWriteUpsert upsert : result.getUpserts())
+            statuses[from + upsert.getIndex()] = Status.upserted;
+        for (int i = from; i < to; i++)
+            if (statuses[i] == null) statuses[i] = Status.matched;
+    }
+
+    void setFailed(int position, String error) {
+        statuses[position] = Status.failed;
+        errors[position] = error;
+    }
+
+    public int size() {
+        return ids.size();
+    }
+
+    public List<String> getIDs() {
+        return Collections.unmodifiableList(ids);
+    }
+
+    public String getID(int position) {
+        return ids.get(position);
+    }
+
+    public Status getStatus(int position) {
+        return statuses[position];
+    }
+
+    /**
+    * Get the error returned by the database for an evaluation.
+    *
+    * @param position The position of the evaluation.
+    *
+    * @return The error message, or null if the evaluation has not failed.
+    */
+    public String getError(int position) {
+        return errors[position];
+    }
+
+    public int getUpsertedCount() {
+        return count(Status.upserted);
+    }
+
+    public int getMatchedCount() {
+        return count(Status.matched);
+    }
+
+    public int getFailedCount() {
+        return count(Status.failed);
+    }
+
+    /**
+    * Get the hard IDs of the evaluations that could not be written.
+    *
+    * @return The list of hard IDs.
+    */
+    public List<String> getFailedIDs() {
+        List<String> failed = new ArrayList<>();
+        for (int i = 0; i < statuses.length; i++)
+            if (statuses[i] == Status.failed) failed.add(ids.get(i));
+        return failed;
+    }
+
+    /**
+    * Check if every evaluation has been inserted or updated.
+    *
+    * @return A boolean indicating if the operation could be performed correctly.
+    */
+    public boolean wasSuccessful() {
+        return getUpsertedCount() + getMatchedCount() == ids.size();
+    }
+
+    private int count(Status status) {
+        int count = 0;
+        for (Status s : statuses) if (s == status) count++;
+        return count;
+    }
+
+    @Override
+    public String toString() {
+        return "BatchWriteResult{size=" + ids.size() + ", upserted=" + getUpsertedCount() +
+            ", matched=" + getMatchedCount() + ", failed=" + getFailedCount() + "}";
+    }
+
+}
@@ -0,0 +1,293 @@
+package util;
+
+import com.mongodb.MongoException;
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import com.mongodb.client.MongoDatabase;
+import org.bson.BsonDocument;
+import org.bson.BsonInt64;
+
+import java.util.concurrent.Callable;
+
+/**
+* Database handle used by the queries, together with its caches. Several contexts can share the same MongoClient
+* (and its connection pool) to work with different databases, and each context can be used from many threads.
+*
+* Queries, IndexManager and the evaluation classes use the context bound to the current thread (see bind, run
+* and call), or the default context created by Connection.initConnection when no context is bound.
+*/
+public class ClientContext implements AutoCloseable {
+
+    private static final ThreadLocal<ClientContext> CURRENT = new ThreadLocal<>();
+
+    private final MongoClient mongoClient;
+    private final boolean ownsClient;
+    private final MongoDatabase mongoDatabase;
+    private final CollectionRegistry collectionRegistry;
+    private volatile WriteBehindQueue writeBehindQueue;
+    private volatile EvaluationCache evaluationCache;
+    private final NameCache nameCache = new NameCache();
+    private volatile boolean latestCollectionsEnabled = false;
+    private volatile Constants.DateStorage dateStorage = Constants.DateStorage.string;
+    private volatile boolean closed = false;
+
+    private ClientContext(MongoClient mongoClient, boolean ownsClient, String databaseName) {
+        this.mongoClient = mongoClient;
+        this.ownsClient = ownsClient;
+        this.mongoDatabase = mongoClient.getDatabase(databaseName);
+        this.collectionRegistry = new CollectionRegistry(mongoDatabase);
+    }
+
+    /**
+    * Create a context with its own MongoClient, checking that MongoDB can be reached.
+    * Closing the context closes the client.
+    *
+    * @param settings Settings of the connection.
+    *
+    * @return The context.
+    *
+    * @throws MongoException If MongoDB cannot be reached.
+    */
+    public static ClientContext create(ConnectionSettings settings) {
+        MongoClient client = MongoClients.create(settings.toMongoClientSettings());
+        ClientContext context = new ClientContext(client, true, settings.getDatabaseName());
+        try {
+            context.getMongoDatabase().runCommand(new BsonDocument("ping", new BsonInt64(1)));
+        } catch (MongoException e) {
+            client.close();
+            throw e;
+        }
+        return context;
+    }
+
+    /**
+    * Create a context over an existing MongoClient. Closing the context does not close the client.
+    *
+    * @param mongoClient The client, which may be shared with other contexts.
+    * @param databaseName DATABASE name where the operations of this context are performed.
+    *
+    * @return The context.
+    */
+    public static ClientContext create(MongoClient mongoClient, String databaseName) {
+        return new ClientContext(mongoClient, false, databaseName);
+    }
+
+    /**
+    * Create a context for another database, sharing the MongoClient of this one.
+    *
+    * @param databaseName DATABASE name where the operations of the new context are performed.
+    *
+    * @return The context.
+    */
+    public ClientContext forDatabase(String databaseName) {
+        return create(mongoClient, databaseName);
+    }
+
+    /**
+    * Get the context bound to the current thread, or the default one (see Connection.initConnection).
+    *
+    * @return The current context.
+    *
+    * @throws MongoException If there is no bound context and the connection has not been initialized.
+    */
+    public static ClientContext current() {
+        ClientContext context = CURRENT.get();
+        if (context == null) context = Connection.getDefaultContext();
+        if (context == null) throw new MongoException("The connection to MongoDB has not been initialized");
+        return context;
+    }
+
+    /**
+    * Get the context bound to the current thread, without falling back to the default one.
+    *
+    * @return The bound context, or null.
+    */
+    public static ClientContext bound() {
+        return CURRENT.get();
+    }
+
+    /**
+    * Get the context bound to the current thread, or the default one, without failing when there is none.
+    *
+    * @return The current context, or null if there is no bound context and the connection has not been initialized.
+    */
+    public static ClientContext currentOrNull() {
+        ClientContext context = CURRENT.get();
+        return context != null ? context : Connection.getDefaultContext();
+    }
+
+    /**
+    * Bind this context to the current thread until the returned scope is closed, when the previously
+    * bound context (if any) is restored. Intended to be used in a try-with-resources statement.
+    *
+    * @return The scope of the binding.
+    */
+    public Scope bind() {
+        ClientContext previous = CURRENT.get();
+        CURRENT.set(this);
+        return new Scope(previous);
+    }
+
+    /**
+    * Run an operation with this context bound to the current thread.
+    *
+    * @param operation The operation.
+    */
+    public void run(Runnable operation) {
+        Scope scope = bind();
+        try {
+            operation.run();
+        } finally {
+            scope.close();
+        }
+    }
+
+    /**
+    * Run an operation with this context bound to the current thread and return its result.
+    *
+    * @param operation The operation.
+    *
+    * @return The result of the operation.
+    */
+    public <T> T call(Callable<T> operation) throws Exception {
+        Scope scope = bind();
+        try {
+            return operation.call();
+        } finally {
+            scope.close();
+        }
+    }
+
+    public MongoClient getMongoClient() {
+        return mongoClient;
+    }
+
+    public MongoDatabase getMongoDatabase() {
+        return mongoDatabase;
+    }
+
+    public CollectionRegistry getCollectionRegistry() {
+        return collectionRegistry;
+    }
+
+    /**
+    * Start the write-behind queue of this context (see WriteBehindQueue). It is closed with the context.
+    *
+    * @return The write-behind queue.
+    */
+    public synchronized WriteBehindQueue startWriteBehindQueue(int capacity, int maxBatchSize, long maxDelayMillis, int workerCount) {
+        if (writeBehindQueue != null && !writeBehindQueue.isClosed())
+            throw new IllegalStateException("The write-behind queue has already been started");
+        writeBehindQueue = new WriteBehindQueue(this, capacity, maxBatchSize, maxDelayMillis, workerCount);
+        return writeBehindQueue;
+    }
+
+    /**
+    * Get the write-behind queue of this context, if it has been started.
+    *
+    * @return The write-behind queue, or null.
+    */
+    public WriteBehindQueue getWriteBehindQueue() {
+        return writeBehindQueue;
+    }
+
+    /**
+    * Enable the cache of the latest evaluations read by Queries (see EvaluationCache), replacing the current one.
+    *
+    * @param maxEntries Maximum number of cached reads.
+    * @param ttlMillis Time (in milliseconds) after which a cached read is loaded again from the database.
+    *
+    * @return The cache.
+    */
+    public EvaluationCache enableEvaluationCache(int maxEntries, long ttlMillis) {
+        evaluationCache = new EvaluationCache(maxEntries, ttlMillis);
+        return evaluationCache;
+    }
+
+    public void disableEvaluationCache() {
+        evaluationCache = null;
+    }
+
+    /**
+    * Get the cache of the latest evaluations, if it has been enabled.
+    *
+    * @return The cache, or null.
+    */
+    public EvaluationCache getEvaluationCache() {
+        return evaluationCache;
+    }
+
+    /**
+    * Get the cache of the IDs and names of the entities (see NameCache), which is always enabled.
+    *
+    * @return The cache.
+    */
+    public NameCache getNameCache() {
+        return nameCache;
+    }
+
+    /**
+    * Enable or disable the materialized views of the latest evaluations (see LatestCollections). When enabled,
+    * the views which have been built are read by Queries.getLatest and maintained by the writers.
+    *
+    * @param enabled Whether the views are used.
+    */
+    public void setLatestCollectionsEnabled(boolean enabled) {
+        latestCollectionsEnabled = enabled;
+    }
+
+    public boolean isLatestCollectionsEnabled() {
+        return latestCollectionsEnabled;
+    }
+
+    /**
+    * Set the type of the evaluationDate fields written by the queries of this context. Switch to DateStorage.date
+    * once the existing collections have been converted with DateMigration, before the writers resume: the filters
+    * and the decoders accept both types, but the sorts on evaluationDate order every Date after every string, so
+    * the reads of the latest evaluations are only right when each collection holds a single type.
+    *
+    * @param dateStorage The type of the evaluationDate fields.
+    */
+    public void setDateStorage(Constants.DateStorage dateStorage) {
+        if (dateStorage == null) throw new IllegalArgumentException("The date storage is mandatory");
+        this.dateStorage = dateStorage;
+    }
+
+    public Constants.DateStorage getDateStorage() {
+        return dateStorage;
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    /**
+    * Send the pending writes of the write-behind queue and close the MongoClient, if it belongs to this context.
+    */
+    @Override
+    public synchronized void close() {
+        if (closed) return;
+        closed = true;
+        if (writeBehindQueue != null) writeBehindQueue.close();
+        if (ownsClient) mongoClient.close();
+    }
+
+    /**
+    * Binding of a context to the current thread.
+    */
+    public static class Scope implements AutoCloseable {
+
+        private final ClientContext previous;
+
+        private Scope(ClientContext previous) {
+            this.previous = previous;
+        }
+
+        @Override
+        public void close() {
+            if (previous == null) CURRENT.remove();
+            else CURRENT.set(previous);
+        }
+    }
+
+}
@@ -0,0 +1,133 @@
+package util;
+
+import com.mongodb.client.MongoDatabase;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+* Keeps the names of the collections of a database, so that checking whether a collection exists does not
+* require a listCollectionNames round-trip on every query. The names are reloaded when they are older than
+* the configured TTL, when a collection is not found for the first time, or after an explicit invalidation.
+* The collections which were not found are remembered until the next reload, so repeated checks of a missing
+* collection do not reach the database either.
+* Its methods can be called concurrently: the reloads are serialized and replace the names atomically.
+*/
+public class CollectionRegistry {
+
+    public static final long DEFAULT_TTL_MILLIS = 60 * 1000;
+
+    private final MongoDatabase database;
+    private final long ttlMillis;
+
+    private volatile Set<String> collections = Collections.emptySet();
+    private volatile List<String> orderedCollections = Collections.emptyList();
+    private volatile long loadedAt;
+    private volatile boolean loaded = false;
+    // Names not found by the last reload
+    private volatile Set<String> missing = ConcurrentHashMap.newKeySet();
+
+    /**
+    * Create a registry for the collections of a database.
+    *
+    * @param database The database whose collections are registered.
+    * @param ttlMillis Time (in milliseconds) after which the names are reloaded from the database.
+    */
+    public CollectionRegistry(MongoDatabase database, long ttlMillis) {
+        this.database = database;
+        this.ttlMillis = ttlMillis;
+    }
+
+    public CollectionRegistry(MongoDatabase database) {
+        this(database, DEFAULT_TTL_MILLIS);
+    }
+
+    /**
+    * Check if a collection exists. If it is neither registered nor known to be missing, the names are reloaded
+    * once before answering, so collections created by other processes are found the first time they are queried,
+    * or after the TTL if they were already queried.
+    *
+    * @param collectionName The name of the collection.
+    *
+    * @return A boolean indicating if the collection exists.
+    */
+    public boolean exists(String collectionName) {
+        if (isExpired()) refreshIfExpired();
+        if (collections.contains(collectionName)) return true;
+        if (missing.contains(collectionName)) return false;
+        return refreshIfUnknown(collectionName);
+    }
+
+    /**
+    * Get the names of the existing collections, in the order returned by the database.
+    *
+    * @return A list containing the collections' names.
+    */
+    public List<String> getCollections() {
+        if (isExpired()) refreshIfExpired();
+        return new ArrayList<>(orderedCollections);
+    }
+
+    /**
+    * Register a collection that is known to exist (e.g. because it has just been created).
+    *
+    * @param collectionName The name of the collection.
+    */
+    public synchronized void register(String collectionName) {
+        missing.remove(collectionName);
+        if (loaded && collections.add(collectionName)) {
+            List<String> names = new ArrayList<>(orderedCollections);
+            names.add(collectionName);
+            orderedCollections = Collections.unmodifiableList(names);
+        }
+    }
+
+    /**
+    * Discard the registered names, which will be reloaded in the next access.
+    */
+    public void invalidate() {
+        loaded = false;
+    }
+
+    /**
+    * Reload the names of the collections from the database.
+    */
+    public synchronized void refresh() {
+        List<String> names = database.listCollectionNames().into(new ArrayList<>());
+        Set<String> set = ConcurrentHashMap.newKeySet(names.size());
+        set.addAll(names);
+        orderedCollections = Collections.unmodifiableList(names);
+        collections = set;
+        missing = ConcurrentHashMap.newKeySet();
+        loadedAt = System.currentTimeMillis();
+        loaded = true;
+    }
+
+    /**
+    * Reload the names unless another thread reloaded them while this one was waiting for the lock.
+    */
+    private synchronized void refreshIfExpired() {
+        if (isExpired()) refresh();
+    }
+
+    /**
+    * Reload the names to look for a collection, unless it was found or reported missing by a reload performed
+    * while this thread was waiting for the lock.
+    */
+    private synchronized boolean refreshIfUnknown(String collectionName) {
+        if (collections.contains(collectionName)) return true;
+        if (missing.contains(collectionName)) return false;
+        refresh();
+        if (collections.contains(collectionName)) return true;
+        missing.add(collectionName);
+        return false;
+    }
+
+    private boolean isExpired() {
+        return !loaded || System.currentTimeMillis() - loadedAt > ttlMillis;
+    }
+
+}
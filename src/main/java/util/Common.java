@@ -4,9 +4,14 @@ import DTOs.*;
 import org.bson.Document;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 public class Common {
 
@@ -30,25 +35,8 @@ public class Common {
             List<?> documentsList = (List<?>) res.get("documents");
 
             for (Object docObject : documentsList) {
-                if (docObject instanceof Document) {
-
-                    Document doc = (Document) docObject;
-                    EvaluationDTO eval = new EvaluationDTO(
-                        Queries.getStringFromObject(doc.get("_id")),
-                        Queries.getStringFromObject(doc.get(Constants.DATA_SOURCE)),
-                        Queries.getStringFromObject(doc.get(Constants.EVALUATION_DATE)),
-                        Queries.getStringFromObject(doc.get(Constants.VALUE)),
-                        Queries.getStringFromObject(doc.get(Constants.RATIONALE))
-                    );
-
-                    evals.add(eval);
-                    metricEval.setID(Queries.getStringFromObject(doc.get(Constants.METRIC_ID)));
-                    metricEval.setName(Queries.getStringFromObjectOrDefault(doc.get(Constants.NAME), metricEval.getID()));
-                    metricEval.setDescription(Queries.getStringFromObjectOrDefault(doc.get(Constants.DESCRIPTION), ""));
-                    metricEval.setProject(Queries.getStringFromObjectOrDefault(doc.get(Constants.PROJECT), ""));
-                    metricEval.setFactors(Queries.getArrayListFromObject(doc.get(Constants.ARRAY_FACTORS)));
-
-                }
+                if (docObject instanceof Document)
+                    processMetricDocument(metricEval, evals, (Document) docObject);
             }
             metricEval.setEvaluations(evals);
             ret.add(metricEval);
@@ -73,30 +61,8 @@ public class Common {
             List<?> documentsList = (List<?>) res.get("documents");
 
             for (Object docObject : documentsList) {
-                if (docObject instanceof Document) {
-
-                    Document doc = (Document) docObject;
-                    EvaluationDTO eval = new EvaluationDTO(
-                        Queries.getStringFromObject(doc.get("_id")),
-                        Queries.getStringFromObject(doc.get(Constants.DATA_SOURCE)),
-                        Queries.getStringFromObject(doc.get(Constants.EVALUATION_DATE)),
-                        Queries.getStringFromObject(doc.get(Constants.VALUE)),
-                        Queries.getStringFromObject(doc.get(Constants.RATIONALE))
-                    );
-
-                    if (Queries.getIntFromObject( doc.get(Constants.DATES_MISMATCH) ) != null)
-                        eval.setMismatchDays(Queries.getIntFromObject( doc.get(Constants.DATES_MISMATCH) ));
-                    if (Queries.getArrayListFromObject(doc.get(Constants.MISSING_METRICS)) != null)
-                        eval.setMissingElements(Queries.getArrayListFromObject( doc.get(Constants.MISSING_METRICS) ));
-
-                    evals.add(eval);
-                    factorEval.setID(Queries.getStringFromObject(doc.get(Constants.FACTOR_ID)));
-                    factorEval.setName(Queries.getStringFromObjectOrDefault(doc.get(Constants.NAME), factorEval.getID()));
-                    factorEval.setDescription(Queries.getStringFromObjectOrDefault(doc.get(Constants.DESCRIPTION), ""));
-                    factorEval.setProject(Queries.getStringFromObjectOrDefault(doc.get(Constants.PROJECT), ""));
-                    factorEval.setStrategicIndicators(Queries.getArrayListFromObject(doc.get(Constants.ARRAY_STRATEGIC_INDICATORS)));
-
-                }
+                if (docObject instanceof Document)
+                    processFactorDocument(factorEval, evals, (Document) docObject);
             }
             factorEval.setEvaluations(evals);
             ret.add(factorEval);
@@ -104,6 +70,96 @@ public class Common {
         return ret;
     }
 
+    /**
+    * Create the lists of MetricEvaluationDTO of each parent factor from a List of Document containing
+    * {_id: {parent, element}, documents} buckets (see Queries.getLatestByParent and Queries.getRangedByParent).
+    *
+    * @param result The Document list containing the metrics' evaluations.
+    *
+    * @return A Map containing, for each factor, the list of MetricEvaluationDTO associated to it.
+    */
+    public static Map<String, List<MetricEvaluationDTO>> processMetricsBucketsByParent(List<Document> result) {
+        Map<String, List<MetricEvaluationDTO>> ret = new HashMap<>();
+        for (Document res : result) {
+            String parent = Queries.getStringFromObject(((Document) res.get("_id")).get("parent"));
+            List<MetricEvaluationDTO> metrics = ret.computeIfAbsent(parent, k -> new ArrayList<>());
+            metrics.addAll(processMetricsBuckets(Collections.singletonList(res)));
+        }
+        return ret;
+    }
+
+    /**
+    * Add the evaluation stored in a metric Document to the evaluations of a MetricEvaluationDTO,
+    * and update the metric's fields with the ones of the Document.
+    *
+    * @param metricEval The MetricEvaluationDTO the evaluation belongs to.
+    * @param evals The list of evaluations of the metric.
+    * @param doc The Document containing the evaluation.
+    */
+    static void processMetricDocument(MetricEvaluationDTO metricEval, List<EvaluationDTO> evals, Document doc) {
+        evals.add(buildEvaluation(doc));
+        metricEval.setID(Queries.getStringFromObject(doc.get(Constants.METRIC_ID)));
+        metricEval.setName(Queries.getStringFromObjectOrDefault(doc.get(Constants.NAME), metricEval.getID()));
+        metricEval.setDescription(Queries.getStringFromObjectOrDefault(doc.get(Constants.DESCRIPTION), ""));
+        metricEval.setProject(Queries.getStringFromObjectOrDefault(doc.get(Constants.PROJECT), ""));
+        metricEval.setFactors(Queries.getArrayListFromObject(doc.get(Constants.ARRAY_FACTORS)));
+    }
+
+    /**
+    * Add the evaluation stored in a factor Document to the evaluations of a FactorEvaluationDTO,
+    * and update the factor's fields with the ones of the Document.
+    *
+    * @param factorEval The FactorEvaluationDTO the evaluation belongs to.
+    * @param evals The list of evaluations of the factor.
+    * @param doc The Document containing the evaluation.
+    */
+    static void processFactorDocument(FactorEvaluationDTO factorEval, List<EvaluationDTO> evals, Document doc) {
+        EvaluationDTO eval = buildEvaluation(doc);
+
+        if (Queries.getIntFromObject( doc.get(Constants.DATES_MISMATCH) ) != null)
+            eval.setMismatchDays(Queries.getIntFromObject( doc.get(Constants.DATES_MISMATCH) ));
+        if (Queries.getArrayListFromObject(doc.get(Constants.MISSING_METRICS)) != null)
+            eval.setMissingElements(Queries.getArrayListFromObject( doc.get(Constants.MISSING_METRICS) ));
+
+        evals.add(eval);
+        factorEval.setID(Queries.getStringFromObject(doc.get(Constants.FACTOR_ID)));
+        factorEval.setName(Queries.getStringFromObjectOrDefault(doc.get(Constants.NAME), factorEval.getID()));
+        factorEval.setDescription(Queries.getStringFromObjectOrDefault(doc.get(Constants.DESCRIPTION), ""));
+        factorEval.setProject(Queries.getStringFromObjectOrDefault(doc.get(Constants.PROJECT), ""));
+        factorEval.setStrategicIndicators(Queries.getArrayListFromObject(doc.get(Constants.ARRAY_STRATEGIC_INDICATORS)));
+    }
+
+    /**
+    * Create an EvaluationDTO with the common fields of an evaluation Document.
+    *
+    * @param doc The Document containing the evaluation.
+    *
+    * @return The equivalent EvaluationDTO.
+    */
+    private static EvaluationDTO buildEvaluation(Document doc) {
+        return new EvaluationDTO(
+            Queries.getStringFromObject(doc.get("_id")),
+            Queries.getStringFromObject(doc.get(Constants.DATA_SOURCE)),
+            FormattedDates.formatStoredDate(doc.get(Constants.EVALUATION_DATE)),
+            Queries.getStringFromObject(doc.get(Constants.VALUE)),
+            Queries.getStringFromObject(doc.get(Constants.RATIONALE))
+        );
+    }
+
+    /**
+    * Create a Stream over the elements returned by an EvaluationIterator.
+    * Closing the Stream closes the underlying cursor.
+    *
+    * @param iterator The EvaluationIterator.
+    *
+    * @return The equivalent Stream.
+    */
+    public static <T extends ElemenEvaluationtDTO> Stream<T> toStream(EvaluationIterator<T> iterator) {
+        return StreamSupport.stream(
+            Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED | Spliterator.NONNULL), false)
+            .onClose(iterator::close);
+    }
+
     /**
     * Create a list of StrategicIndicatorEvaluationDTO from a List of Document,
     * containing strategic indicators' evaluations.
@@ -125,13 +181,7 @@ public class Common {
                 if (docObject instanceof Document) {
 
                     Document doc = (Document) docObject;
-                    EvaluationDTO eval = new EvaluationDTO(
-                        Queries.getStringFromObject(doc.get("_id")),
-                        Queries.getStringFromObject(doc.get(Constants.DATA_SOURCE)),
-                        Queries.getStringFromObject(doc.get(Constants.EVALUATION_DATE)),
-                        Queries.getStringFromObject(doc.get(Constants.VALUE)),
-                        Queries.getStringFromObject(doc.get(Constants.RATIONALE))
-                    );
+                    EvaluationDTO eval = buildEvaluation(doc);
 
                     if (Queries.getIntFromObject( doc.get(Constants.DATES_MISMATCH) ) != null)
                         eval.setMismatchDays(Queries.getIntFromObject( doc.get(Constants.DATES_MISMATCH) ));
@@ -181,6 +231,7 @@ public class Common {
 
     /**
     * Get the IDs and names of all the existing entities in each QMLevel.
+    * The names are cached by the NameCache of the current ClientContext.
     *
     * @param projectId The ID of the project.
     * @param QMLevel The QMLevel (metrics, factors or strategic_indicators).
@@ -188,23 +239,17 @@ public class Common {
     * @return A Map of ID,name of the existing entities, for the given project and QMLevel.
     */
     public static Map<String, String> getIDNames(String projectId, Constants.QMLevel QMLevel) {
-        Map<String, String> IDNames = new HashMap<>();
-        List<Document> response = Queries.getLatest(projectId, QMLevel);
-
-        for (Document res : response) {
-            String key = Queries.getStringFromObject(res.get("_id"));
-            List<?> documentsList = (List<?>) res.get("documents");
-
-            for (Object docObject : documentsList) {
-                if (docObject instanceof Document) {
-                    Document doc = (Document) docObject;
-                    String name = Queries.getStringFromObject(doc.get("name"));
-                    IDNames.putIfAbsent(key, name);
-                }
-            }
+        return new HashMap<>(ClientContext.current().getNameCache().getNames(projectId, QMLevel));
+    }
 
-        }
-        return IDNames;
+    /**
+    * Discard the cached IDs and names of a QMLevel, if the connection has been initialized.
+    *
+    * @param QMLevel The QMLevel (metrics, factors or strategic_indicators).
+    */
+    public static void resetIDNames(Constants.QMLevel QMLevel) {
+        ClientContext context = ClientContext.currentOrNull();
+        if (context != null) context.getNameCache().invalidate(QMLevel);
     }
 
 }
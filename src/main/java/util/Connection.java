@@ -2,23 +2,14 @@ package util;
 
 import com.mongodb.MongoException;
 import com.mongodb.client.MongoClient;
-import com.mongodb.client.MongoClients;
 import com.mongodb.client.MongoDatabase;
-import com.mongodb.client.MongoIterable;
-import evaluation.Factor;
-import evaluation.StrategicIndicator;
-import org.bson.BsonDocument;
-import org.bson.BsonInt64;
-import org.bson.Document;
-import org.bson.conversions.Bson;
 
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 public class Connection {
 
-    private static MongoClient mongoClient;
-    private static MongoDatabase mongoDatabase;
+    private static volatile ClientContext defaultContext;
 
     /**
     * This method creates the connection to the MongoDB container and databases.
@@ -28,44 +19,98 @@ public class Connection {
     * @param databaseName DATABASE name where all the operations are going to be performed. [MANDATORY]
     * @param username Credentials when MongoDB requires them. [OPTIONAL]
     * @param password Credentials when MongoDB requires them. [OPTIONAL]
+    *
+    * @throws MongoException If MongoDB cannot be reached.
     */
     public static void initConnection(String ip, int port, String databaseName, String username, String password) {
+        initConnection(ConnectionSettings.builder(ip, port, databaseName).credentials(username, password).build());
+    }
+
+    /**
+    * This method creates the connection to the MongoDB container and databases, with the connection pool,
+    * timeouts, compressors and read/write concerns of the given settings. The connection becomes the default
+    * ClientContext, used when no other context is bound to the current thread.
+    *
+    * @param settings Settings of the connection. [MANDATORY]
+    *
+    * @throws MongoException If MongoDB cannot be reached.
+    */
+    public static void initConnection(ConnectionSettings settings) {
         Logger mongodbLogger = Logger.getLogger("org.mongodb.driver");
         mongodbLogger.setLevel(Level.WARNING);
-        String connectionString;
-
-        if (username != null && !username.isEmpty() && password != null && !password.isEmpty())
-            connectionString = "mongodb://" + username + ":" + password + "@" + ip + ":" + port;
-        else connectionString = "mongodb://" + ip + ":" + port;
-        mongoClient = MongoClients.create(connectionString);
-        mongoDatabase = mongoClient.getDatabase(databaseName);
 
         try {
-            Bson command = new BsonDocument("ping", new BsonInt64(1));
-            mongoDatabase.runCommand(command);
+            defaultContext = ClientContext.create(settings);
             System.out.println("Successfully connected to MongoDB");
         } catch (MongoException e) {
-            e.printStackTrace();
             System.err.println("Error connecting to to MongoDB");
-            System.exit(1);
+            throw e;
         }
     }
 
+    /**
+    * Get the default context, created by initConnection.
+    *
+    * @return The default context, or null if the connection has not been initialized.
+    */
+    public static ClientContext getDefaultContext() {
+        return defaultContext;
+    }
+
     public static MongoClient getMongoClient() {
-        return mongoClient;
+        ClientContext context = defaultContext;
+        return context != null ? context.getMongoClient() : null;
     }
 
     public static MongoDatabase getMongoDatabase() {
-        return mongoDatabase;
+        ClientContext context = defaultContext;
+        return context != null ? context.getMongoDatabase() : null;
+    }
+
+    public static CollectionRegistry getCollectionRegistry() {
+        ClientContext context = defaultContext;
+        return context != null ? context.getCollectionRegistry() : null;
+    }
+
+    /**
+    * This method starts the write-behind queue used to write evaluations and relations asynchronously.
+    * It is closed (and its pending writes are sent) when the connection is closed.
+    *
+    * @param capacity Maximum number of writes waiting in the queue.
+    * @param maxBatchSize Maximum number of writes sent in each bulk write.
+    * @param maxDelayMillis Maximum time (in milliseconds) a write waits for other writes to fill its batch.
+    * @param workerCount Number of threads sending the bulk writes.
+    *
+    * @return The write-behind queue.
+    */
+    public static WriteBehindQueue startWriteBehindQueue(int capacity, int maxBatchSize, long maxDelayMillis, int workerCount) {
+        ClientContext context = defaultContext;
+        if (context == null) throw new MongoException("The connection to MongoDB has not been initialized");
+        return context.startWriteBehindQueue(capacity, maxBatchSize, maxDelayMillis, workerCount);
+    }
+
+    public static WriteBehindQueue startWriteBehindQueue() {
+        return startWriteBehindQueue(WriteBehindQueue.DEFAULT_CAPACITY, WriteBehindQueue.DEFAULT_MAX_BATCH_SIZE,
+            WriteBehindQueue.DEFAULT_MAX_DELAY_MILLIS, 1);
+    }
+
+    /**
+    * Get the write-behind queue, if it has been started.
+    *
+    * @return The write-behind queue, or null.
+    */
+    public static WriteBehindQueue getWriteBehindQueue() {
+        ClientContext context = defaultContext;
+        return context != null ? context.getWriteBehindQueue() : null;
     }
 
     /**
     * This method closes the previously created connection to the MongoDB container and databases (if any).
     */
     public static void closeConnection() {
-        if (mongoClient != null) mongoClient.close();
-        Factor.resetFactorsIDNames();
-        StrategicIndicator.resetIndicatorsIDNames();
+        ClientContext context = defaultContext;
+        if (context != null) context.close();
+        defaultContext = null;
     }
 
 }
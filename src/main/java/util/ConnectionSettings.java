@@ -0,0 +1,252 @@
+package util;
+
+import com.mongodb.ConnectionString;
+import com.mongodb.MongoClientSettings;
+import com.mongodb.MongoCompressor;
+import com.mongodb.ReadConcern;
+import com.mongodb.ReadPreference;
+import com.mongodb.WriteConcern;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+* Settings of the connection to MongoDB: address, credentials, connection pool, timeouts, wire compression and
+* read/write concerns. The settings which are not set keep the defaults of the MongoDB driver.
+*/
+public class ConnectionSettings {
+
+    private final String ip;
+    private final int port;
+    private final String databaseName;
+    private final String username;
+    private final String password;
+    private final Integer minPoolSize;
+    private final Integer maxPoolSize;
+    private final Long maxWaitMillis;
+    private final Long maxIdleMillis;
+    private final Long connectTimeoutMillis;
+    private final Long readTimeoutMillis;
+    private final Long serverSelectionTimeoutMillis;
+    private final List<String> compressors;
+    private final ReadPreference readPreference;
+    private final ReadConcern readConcern;
+    private final WriteConcern writeConcern;
+
+    private ConnectionSettings(Builder builder) {
+        this.ip = builder.ip;
+        this.port = builder.port;
+        this.databaseName = builder.databaseName;
+        this.username = builder.username;
+        this.password = builder.password;
+        this.minPoolSize = builder.minPoolSize;
+        this.maxPoolSize = builder.maxPoolSize;
+        this.maxWaitMillis = builder.maxWaitMillis;
+        this.maxIdleMillis = builder.maxIdleMillis;
+        this.connectTimeoutMillis = builder.connectTimeoutMillis;
+        this.readTimeoutMillis = builder.readTimeoutMillis;
+        this.serverSelectionTimeoutMillis = builder.serverSelectionTimeoutMillis;
+        this.compressors = new ArrayList<>(builder.compressors);
+        this.readPreference = builder.readPreference;
+        this.readConcern = builder.readConcern;
+        this.writeConcern = builder.writeConcern;
+    }
+
+    /**
+    * Create a builder of the settings.
+    *
+    * @param ip IP where MongoDB is available.
+    * @param port PORT where the MongoDB services are available.
+    * @param databaseName DATABASE name where all the operations are going to be performed.
+    *
+    * @return The builder.
+    */
+    public static Builder builder(String ip, int port, String databaseName) {
+        return new Builder(ip, port, databaseName);
+    }
+
+    public String getDatabaseName() {
+        return databaseName;
+    }
+
+    /**
+    * Get the connection string of the MongoDB server, including the credentials (if any).
+    *
+    * @return The connection string.
+    */
+    String getConnectionString() {
+        if (username != null && !username.isEmpty() && password != null && !password.isEmpty())
+            return "mongodb://" + username + ":" + password + "@" + ip + ":" + port;
+        else return "mongodb://" + ip + ":" + port;
+    }
+
+    /**
+    * Build the settings of the MongoDB client.
+    *
+    * @return The MongoClientSettings.
+    */
+    MongoClientSettings toMongoClientSettings() {
+        MongoClientSettings.Builder settings = MongoClientSettings.builder()
+            .applyConnectionString(new ConnectionString(getConnectionString()));
+
+        settings.applyToConnectionPoolSettings(pool -> {
+            if (minPoolSize != null) pool.minSize(minPoolSize);
+            if (maxPoolSize != null) pool.maxSize(maxPoolSize);
+            if (maxWaitMillis != null) pool.maxWaitTime(maxWaitMillis, TimeUnit.MILLISECONDS);
+            if (maxIdleMillis != null) pool.maxConnectionIdleTime(maxIdleMillis, TimeUnit.MILLISECONDS);
+        });
+        settings.applyToSocketSettings(socket -> {
+            if (connectTimeoutMillis != null) socket.connectTimeout(connectTimeoutMillis.intValue(), TimeUnit.MILLISECONDS);
+            if (readTimeoutMillis != null) socket.readTimeout(readTimeoutMillis.intValue(), TimeUnit.MILLISECONDS);
+        });
+        if (serverSelectionTimeoutMillis != null)
+            settings.applyToClusterSettings(cluster ->
+                cluster.serverSelectionTimeout(serverSelectionTimeoutMillis, TimeUnit.MILLISECONDS));
+
+        if (!compressors.isEmpty()) {
+            List<MongoCompressor> compressorList = new ArrayList<>();
+            for (String compressor : compressors) compressorList.add(getCompressor(compressor));
+            settings.compressorList(compressorList);
+        }
+        if (readPreference != null) settings.readPreference(readPreference);
+        if (readConcern != null) settings.readConcern(readConcern);
+        if (writeConcern != null) settings.writeConcern(writeConcern);
+        return settings.build();
+    }
+
+    private static MongoCompressor getCompressor(String name) {
+        switch (name.toLowerCase()) {
+            case "snappy": return MongoCompressor.createSnappyCompressor();
+            case "zlib": return MongoCompressor.createZlibCompressor();
+            case "zstd": return MongoCompressor.createZstdCompressor();
+            default: throw new IllegalArgumentException("Unknown compressor: " + name);
+        }
+    }
+
+    public static class Builder {
+
+        private final String ip;
+        private final int port;
+        private final String databaseName;
+        private String username;
+        private String password;
+        private Integer minPoolSize;
+        private Integer maxPoolSize;
+        private Long maxWaitMillis;
+        private Long maxIdleMillis;
+        private Long connectTimeoutMillis;
+        private Long readTimeoutMillis;
+        private Long serverSelectionTimeoutMillis;
+        private final List<String> compressors = new ArrayList<>();
+        private ReadPreference readPreference;
+        private ReadConcern readConcern;
+        private WriteConcern writeConcern;
+
+        private Builder(String ip, int port, String databaseName) {
+            this.ip = ip;
+            this.port = port;
+            this.databaseName = databaseName;
+        }
+
+        /**
+        * Credentials when MongoDB requires them. They are ignored if any of them is null or empty.
+        */
+        public Builder credentials(String username, String password) {
+            this.username = username;
+            this.password = password;
+            return this;
+        }
+
+        /**
+        * Minimum number of connections kept open in the pool.
+        */
+        public Builder minPoolSize(int minPoolSize) {
+            this.minPoolSize = minPoolSize;
+            return this;
+        }
+
+        /**
+        * Maximum number of connections in the pool, which limits the number of concurrent operations.
+        */
+        public Builder maxPoolSize(int maxPoolSize) {
+            this.maxPoolSize = maxPoolSize;
+            return this;
+        }
+
+        /**
+        * Maximum time (in milliseconds) an operation waits for a free connection of the pool.
+        */
+        public Builder maxWaitTime(long maxWaitMillis) {
+            this.maxWaitMillis = maxWaitMillis;
+            return this;
+        }
+
+        /**
+        * Maximum time (in milliseconds) a connection can stay idle in the pool before being closed.
+        */
+        public Builder maxConnectionIdleTime(long maxIdleMillis) {
+            this.maxIdleMillis = maxIdleMillis;
+            return this;
+        }
+
+        /**
+        * Maximum time (in milliseconds) to open a connection.
+        */
+        public Builder connectTimeout(long connectTimeoutMillis) {
+            this.connectTimeoutMillis = connectTimeoutMillis;
+            return this;
+        }
+
+        /**
+        * Maximum time (in milliseconds) to wait for the response of an operation (0 means no limit).
+        */
+        public Builder readTimeout(long readTimeoutMillis) {
+            this.readTimeoutMillis = readTimeoutMillis;
+            return this;
+        }
+
+        /**
+        * Maximum time (in milliseconds) to find an available server, which is also how long
+        * initConnection waits before failing when MongoDB is not reachable.
+        */
+        public Builder serverSelectionTimeout(long serverSelectionTimeoutMillis) {
+            this.serverSelectionTimeoutMillis = serverSelectionTimeoutMillis;
+            return this;
+        }
+
+        /**
+        * Wire compressors, in order of preference (snappy, zlib or zstd). The server uses the first one
+        * it also supports. The snappy and zstd compressors require snappy-java and zstd-jni in the classpath.
+        */
+        public Builder compressors(String... compressors) {
+            for (String compressor : compressors) getCompressor(compressor);
+            this.compressors.clear();
+            for (String compressor : compressors) this.compressors.add(compressor);
+            return this;
+        }
+
+        public Builder readPreference(ReadPreference readPreference) {
+            this.readPreference = readPreference;
+            return this;
+        }
+
+        public Builder readConcern(ReadConcern readConcern) {
+            this.readConcern = readConcern;
+            return this;
+        }
+
+        public Builder writeConcern(WriteConcern writeConcern) {
+            this.writeConcern = writeConcern;
+            return this;
+        }
+
+        public ConnectionSettings build() {
+            if (ip == null || ip.isEmpty()) throw new IllegalArgumentException("The IP of MongoDB is mandatory");
+            if (databaseName == null || databaseName.isEmpty())
+                throw new IllegalArgumentException("The database name is mandatory");
+            return new ConnectionSettings(this);
+        }
+    }
+
+}
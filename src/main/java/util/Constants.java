@@ -42,6 +42,8 @@ public class Constants {
     public static final String WEIGHT = "weight";
     public static final String TARGETVALUE = "targetValue";
     public static final String SOURCELABEL = "sourceLabel";
+    public static final String SOURCE_ELEMENT = "sourceElement";
+    public static final String TARGET_ELEMENT = "targetElement";
 
     // INDEXES
 
@@ -55,6 +57,9 @@ public class Constants {
     static final String ARRAY_FACTORS = "factors";
     static final String ARRAY_STRATEGIC_INDICATORS = "indicators";
 
+    // Auxiliary field where the parents arrays are unwound in the aggregations
+    static final String UNWOUND_PARENT = "_parent";
+
     // ESTIMATIONS
 
     static final String ESTIMATION = "estimation";
@@ -65,8 +70,24 @@ public class Constants {
 
     // OTHERS
 
+    // Number of documents fetched in each round-trip by the cursors returned by Queries
+    public static final int DEFAULT_BATCH_SIZE = 1000;
+
+    // Number of upserts sent in each bulk write by the batch writers
+    public static final int DEFAULT_WRITE_BATCH_SIZE = 1000;
+
+    // Number of results of each page read by the paged readers of Queries
+    public static final int DEFAULT_PAGE_SIZE = 1000;
+
     public enum QMLevel { metrics, factors, strategic_indicators, relations }
 
+    // Fields returned by the read queries: all of them, only the ones needed to plot the evaluations
+    // (identifiers, date and value) or only the ones describing the entity (identifier, name, description...)
+    public enum ReadProfile { full, values, header }
+
+    // Type of the evaluationDate fields: yyyy-MM-dd strings, or BSON dates at 00:00 UTC (see DateMigration)
+    public enum DateStorage { string, date }
+
     // MAPPINGS
 
     static final Document STRATEGIC_INDICATORS_MAPPING = new Document("$jsonSchema", new Document()
@@ -76,7 +97,7 @@ public class Constants {
             .append("_id", new Document("bsonType", Arrays.asList("objectId", "string")))
             .append("project", new Document("bsonType", Arrays.asList("string", "null")))
             .append("strategic_indicator", new Document("bsonType", Arrays.asList("string", "null")))
-            .append("evaluationDate", new Document("bsonType", Arrays.asList("string", "null")))
+            .append("evaluationDate", new Document("bsonType", Arrays.asList("string", "date", "null")))
             .append("datasource", new Document("bsonType", Arrays.asList("string", "null")))
             .append("name", new Document("bsonType", Arrays.asList("string", "null")))
             .append("description", new Document("bsonType", Arrays.asList("string", "null")))
@@ -97,7 +118,7 @@ public class Constants {
             .append("_id", new Document("bsonType", Arrays.asList("objectId", "string")))
             .append("project", new Document("bsonType", Arrays.asList("string", "null")))
             .append("factor", new Document("bsonType", Arrays.asList("string", "null")))
-            .append("evaluationDate", new Document("bsonType", Arrays.asList("string", "null")))
+            .append("evaluationDate", new Document("bsonType", Arrays.asList("string", "date", "null")))
             .append("datasource", new Document("bsonType", Arrays.asList("string", "null")))
             .append("name", new Document("bsonType", Arrays.asList("string", "null")))
             .append("description", new Document("bsonType", Arrays.asList("string", "null")))
@@ -0,0 +1,135 @@
+package util;
+
+import com.mongodb.MongoException;
+import com.mongodb.bulk.BulkWriteResult;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoCursor;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.Sorts;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.WriteModel;
+import org.bson.Document;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static util.Constants.*;
+
+/**
+* Converts the evaluationDate fields of the existing collections from yyyy-MM-dd strings into BSON dates at
+* 00:00 UTC (see DateStorage.date), which are smaller, compared natively by the range filters and usable by the
+* date operators of the aggregation pipelines.
+*
+* The migration streams the documents whose evaluationDate is still a string and converts them in unordered
+* batches, so it does not load the collection in memory and can be interrupted and run again: the converted
+* documents are not read again. The hard IDs (e.g. project-metric-yyyy-MM-dd) are not changed.
+*
+* While a collection holds both types, the range and equality filters, the downsampling and the upserts of the
+* LatestCollections views compare the dates by value, but the sorts on evaluationDate do not: MongoDB sorts every
+* Date after every string, so the reads of the latest evaluations (Queries.getLatest, getNames, the relations of
+* the current date and the page tokens) may return a converted evaluation instead of a newer one which is still a
+* string. Hence, stop the writers (including other processes and the WriteBehindQueue) before migrating, convert
+* every collection of the database, switch the contexts with ClientContext.setDateStorage(DateStorage.date) and
+* only then let the writers resume.
+*/
+public class DateMigration {
+
+    /**
+    * Convert the evaluationDate fields of all the collections of a project.
+    *
+    * @param projectId The ID of the project.
+    * @param batchSize The number of documents read and written per batch.
+    *
+    * @return The number of converted documents.
+    */
+    public static long migrate(String projectId, int batchSize) {
+        long converted = 0;
+        for (QMLevel QMLevel : QMLevel.values()) converted += migrate(projectId, QMLevel, batchSize);
+        return converted;
+    }
+
+    /**
+    * Convert the evaluationDate fields of the collection of a project and QMLevel. The evaluationDate fields
+    * which are not valid yyyy-MM-dd dates are left unchanged.
+    *
+    * @param projectId The ID of the project.
+    * @param QMLevel The QMLevel (metrics, factors, strategic_indicators or relations).
+    * @param batchSize The number of documents read and written per batch.
+    *
+    * @return The number of converted documents.
+    */
+    public static long migrate(String projectId, QMLevel QMLevel, int batchSize) {
+        if (batchSize <= 0) throw new IllegalArgumentException("The batch size must be positive");
+        ClientContext context = ClientContext.current();
+        String indexName = Queries.getIndex(projectId, QMLevel);
+        if (!context.getCollectionRegistry().exists(indexName)) return 0;
+        updateValidator(context, indexName, QMLevel);
+
+        MongoCollection<Document> collection = context.getMongoDatabase().getCollection(indexName);
+        long converted = 0;
+        long skipped = 0;
+        List<WriteModel<Document>> batch = new ArrayList<>();
+        // Only the string dates are read: a migration which was interrupted resumes where it stopped
+        try (MongoCursor<Document> cursor = collection.find(Filters.type(EVALUATION_DATE, "string"))
+                .projection(Projections.include("_id", EVALUATION_DATE))
+                .sort(Sorts.ascending("_id"))
+                .batchSize(batchSize)
+                .iterator()) {
+            while (cursor.hasNext()) {
+                Document doc = cursor.next();
+                String date = doc.getString(EVALUATION_DATE);
+                LocalDate day;
+                try {
+                    day = LocalDate.parse(date);
+                } catch (DateTimeParseException e) {
+                    skipped++;
+                    continue;
+                }
+                // The filter on the old value keeps the evaluations rewritten during the migration
+                batch.add(new UpdateOneModel<>(
+                    Filters.and(Filters.eq("_id", doc.get("_id")), Filters.eq(EVALUATION_DATE, date)),
+                    new Document("$set", new Document(EVALUATION_DATE, FormattedDates.toDate(day)))));
+                if (batch.size() >= batchSize) {
+                    converted += write(collection, batch);
+                    batch.clear();
+                }
+            }
+        }
+        if (!batch.isEmpty()) converted += write(collection, batch);
+
+        if (converted > 0) {
+            if (QMLevel != Constants.QMLevel.relations &&
+                context.getCollectionRegistry().exists(LatestCollections.getIndex(projectId, QMLevel)))
+                LatestCollections.rebuild(projectId, QMLevel);
+            Queries.invalidateCache(projectId);
+        }
+        System.out.println("Converted " + converted + " evaluation dates of '" + indexName + "'" +
+            (skipped > 0 ? " (" + skipped + " invalid dates skipped)" : ""));
+        return converted;
+    }
+
+    private static int write(MongoCollection<Document> collection, List<WriteModel<Document>> batch) {
+        BulkWriteResult result = collection.bulkWrite(batch, new BulkWriteOptions().ordered(false).bypassDocumentValidation(true));
+        return result.getModifiedCount();
+    }
+
+    /**
+    * Replace the validator of the collections created with a $jsonSchema that only accepts string dates.
+    */
+    private static void updateValidator(ClientContext context, String indexName, QMLevel QMLevel) {
+        Document mapping;
+        if (QMLevel == Constants.QMLevel.strategic_indicators) mapping = STRATEGIC_INDICATORS_MAPPING;
+        else if (QMLevel == Constants.QMLevel.factors) mapping = FACTORS_MAPPING;
+        else return;
+        try {
+            context.getMongoDatabase().runCommand(new Document("collMod", indexName).append("validator", mapping));
+        } catch (MongoException e) {
+            System.err.println("ERROR updating the validator of '" + indexName + "': " + e.getMessage());
+        }
+    }
+
+}
@@ -0,0 +1,139 @@
+package util;
+
+import com.mongodb.client.model.Accumulators;
+import com.mongodb.client.model.Aggregates;
+import com.mongodb.client.model.BsonField;
+import com.mongodb.client.model.Sorts;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+import static util.Constants.*;
+
+/**
+* Time buckets used to downsample the evaluations of the ranged reads (see Queries.getRanged and
+* Metric.getDownsampledEvaluations). The buckets are computed in the aggregation pipeline, so only one evaluation
+* per entity and bucket is sent by the server.
+*
+* Each bucket is returned as the latest evaluation of the bucket (keeping its evaluationDate, rationale...), whose
+* value is replaced by the mean, minimum or maximum of the values of the bucket when requested.
+*/
+public class Downsampling {
+
+    /**
+    * Value of each bucket: the value of its latest evaluation, or the mean, minimum or maximum of its values.
+    */
+    public enum Aggregation { last, mean, min, max }
+
+    private static final long DAY_MILLIS = 24 * 60 * 60 * 1000L;
+    // 1970-01-01 was a Thursday: moving 3 days forward aligns the weeks to Monday
+    private static final int WEEK_OFFSET_DAYS = 3;
+    private static final String BUCKET_VALUE = "_value";
+
+    private final int days;
+    private final int offsetDays;
+    private final Aggregation aggregation;
+
+    private Downsampling(int days, int offsetDays, Aggregation aggregation) {
+        if (aggregation == null) throw new IllegalArgumentException("The aggregation of the buckets is mandatory");
+        this.days = days;
+        this.offsetDays = offsetDays;
+        this.aggregation = aggregation;
+    }
+
+    /**
+    * Buckets of N days, counted from 1970-01-01.
+    *
+    * @param days The number of days of each bucket.
+    * @param aggregation The value of each bucket.
+    *
+    * @return The downsampling.
+    */
+    public static Downsampling days(int days, Aggregation aggregation) {
+        if (days <= 0) throw new IllegalArgumentException("The number of days of a bucket must be positive");
+        return new Downsampling(days, 0, aggregation);
+    }
+
+    /**
+    * Buckets of a week, from Monday to Sunday.
+    *
+    * @param aggregation The value of each bucket.
+    *
+    * @return The downsampling.
+    */
+    public static Downsampling weekly(Aggregation aggregation) {
+        return new Downsampling(7, WEEK_OFFSET_DAYS, aggregation);
+    }
+
+    /**
+    * Buckets of a calendar month.
+    *
+    * @param aggregation The value of each bucket.
+    *
+    * @return The downsampling.
+    */
+    public static Downsampling monthly(Aggregation aggregation) {
+        return new Downsampling(0, 0, aggregation);
+    }
+
+    public Aggregation getAggregation() {
+        return aggregation;
+    }
+
+    /**
+    * Build the stages that replace the evaluations of each entity by one evaluation per bucket.
+    *
+    * @param QMLevel The QMLevel (metrics, factors or strategic_indicators).
+    *
+    * @return The stages, to be placed after the filter of the ranged read.
+    */
+    List<Bson> getStages(QMLevel QMLevel) {
+        String group = Queries.getIDtoGroup(QMLevel);
+        Document id = new Document("element", "$" + group).append("bucket", getBucketExpression());
+
+        List<BsonField> accumulators = new ArrayList<>();
+        accumulators.add(Accumulators.last("document", "$$ROOT"));
+        switch (aggregation) {
+            case mean: accumulators.add(Accumulators.avg(BUCKET_VALUE, "$" + VALUE)); break;
+            case min: accumulators.add(Accumulators.min(BUCKET_VALUE, "$" + VALUE)); break;
+            case max: accumulators.add(Accumulators.max(BUCKET_VALUE, "$" + VALUE)); break;
+            default: break;
+        }
+
+        Object newRoot = aggregation == Aggregation.last ? "$document" :
+            new Document("$mergeObjects", Arrays.asList("$document", new Document(VALUE, "$" + BUCKET_VALUE)));
+
+        return Arrays.asList(
+            Aggregates.sort(Sorts.orderBy(Sorts.ascending(group), Sorts.ascending(EVALUATION_DATE))),
+            Aggregates.group(id, accumulators),
+            Aggregates.replaceRoot(newRoot)
+        );
+    }
+
+    /**
+    * Build the expression that identifies the bucket of an evaluation from its evaluationDate.
+    */
+    private Object getBucketExpression() {
+        // Converted field by field, since a collection being migrated holds both strings and Dates
+        Object date = FormattedDates.toDateExpression("$" + EVALUATION_DATE);
+        if (days == 0)
+            return new Document("$add", Arrays.asList(
+                new Document("$multiply", Arrays.asList(new Document("$year", date), 12)),
+                new Document("$month", date)));
+
+        Document millis = new Document("$subtract", Arrays.asList(date, new Date(0)));
+        return new Document("$floor", new Document("$divide", Arrays.asList(
+            new Document("$add", Arrays.asList(millis, offsetDays * DAY_MILLIS)), days * DAY_MILLIS)));
+    }
+
+    @Override
+    public String toString() {
+        String buckets = days == 0 ? "monthly" : days == 7 && offsetDays == WEEK_OFFSET_DAYS ? "weekly" : days + " days";
+        return "Downsampling{" + buckets + ", " + aggregation + "}";
+    }
+
+}
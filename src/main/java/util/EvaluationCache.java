@@ -0,0 +1,189 @@
+package util;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import static util.Constants.*;
+
+/**
+* In-process cache of the latest evaluations read by Queries, bounded in size (the least recently used entries
+* are evicted first) and in time (the entries expire after the configured TTL). The writers of Queries invalidate
+* the entries of the projects they modify, so the cache only serves stale data written by other processes, for
+* at most the TTL. The cached evaluations are shared between callers and must not be modified.
+* It can be used from several threads: the entries are guarded by a single lock, which is not held while loading,
+* so concurrent misses of the same read may each query the database, and a read loaded before an invalidation of
+* its project is not cached.
+*/
+public class EvaluationCache {
+
+    public static final int DEFAULT_MAX_ENTRIES = 1000;
+    public static final long DEFAULT_TTL_MILLIS = 60 * 1000;
+
+    /**
+    * Identifies a read: the project, QMLevel, entity (or parent) and the form of the results.
+    */
+    static class Key {
+        private final String projectId;
+        private final QMLevel QMLevel;
+        private final String elementId;
+        private final String parent;
+        private final Object variant;
+
+        Key(String projectId, QMLevel QMLevel, String elementId, String parent, Object variant) {
+            this.projectId = projectId;
+            this.QMLevel = QMLevel;
+            this.elementId = elementId;
+            this.parent = parent;
+            this.variant = variant;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            Key key = (Key) o;
+            return Objects.equals(projectId, key.projectId) && QMLevel == key.QMLevel &&
+                Objects.equals(elementId, key.elementId) && Objects.equals(parent, key.parent) &&
+                Objects.equals(variant, key.variant);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(projectId, QMLevel, elementId, parent, variant);
+        }
+    }
+
+    private static class CachedRead {
+        private final List<?> value;
+        private final long loadedAt;
+
+        private CachedRead(List<?> value, long loadedAt) {
+            this.value = value;
+            this.loadedAt = loadedAt;
+        }
+    }
+
+    private final int maxEntries;
+    private final long ttlMillis;
+    private final LinkedHashMap<Key, CachedRead> entries;
+    // Incremented on every invalidation of a project, so that reads started before it are not cached
+    private final Map<String, AtomicLong> generations = new ConcurrentHashMap<>();
+    private final AtomicLong globalGeneration = new AtomicLong();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    /**
+    * Create a cache.
+    *
+    * @param maxEntries Maximum number of cached reads.
+    * @param ttlMillis Time (in milliseconds) after which a cached read is loaded again from the database.
+    */
+    public EvaluationCache(int maxEntries, long ttlMillis) {
+        if (maxEntries <= 0 || ttlMillis <= 0) throw new IllegalArgumentException("Invalid cache configuration");
+        this.maxEntries = maxEntries;
+        this.ttlMillis = ttlMillis;
+        this.entries = new LinkedHashMap<Key, CachedRead>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, CachedRead> eldest) {
+                if (size() <= EvaluationCache.this.maxEntries) return false;
+                evictions.incrementAndGet();
+                return true;
+            }
+        };
+    }
+
+    public EvaluationCache() {
+        this(DEFAULT_MAX_ENTRIES, DEFAULT_TTL_MILLIS);
+    }
+
+    /**
+    * Get a cached read, or load it and cache it if it is not cached or has expired.
+    *
+    * @param key The read.
+    * @param loader The query that loads the read from the database.
+    *
+    * @return The (shared) result of the read.
+    */
+    @SuppressWarnings("unchecked")
+    <T> List<T> get(Key key, Supplier<List<T>> loader) {
+        long now = System.currentTimeMillis();
+        synchronized (entries) {
+            CachedRead entry = entries.get(key);
+            if (entry != null && now - entry.loadedAt <= ttlMillis) {
+                hits.incrementAndGet();
+                return (List<T>) entry.value;
+            }
+            if (entry != null) entries.remove(key);
+        }
+        misses.incrementAndGet();
+
+        long generation = getGeneration(key.projectId);
+        List<T> value = loader.get();
+        synchronized (entries) {
+            if (generation == getGeneration(key.projectId))
+                entries.put(key, new CachedRead(value, now));
+        }
+        return value;
+    }
+
+    private long getGeneration(String projectId) {
+        return globalGeneration.get() + generations.computeIfAbsent(projectId, k -> new AtomicLong()).get();
+    }
+
+    /**
+    * Discard the cached reads of a project.
+    *
+    * @param projectId The ID of the project.
+    */
+    public void invalidate(String projectId) {
+        synchronized (entries) {
+            generations.computeIfAbsent(projectId, k -> new AtomicLong()).incrementAndGet();
+            Iterator<Key> keys = entries.keySet().iterator();
+            while (keys.hasNext())
+                if (Objects.equals(keys.next().projectId, projectId)) keys.remove();
+        }
+    }
+
+    /**
+    * Discard every cached read.
+    */
+    public void invalidateAll() {
+        synchronized (entries) {
+            globalGeneration.incrementAndGet();
+            entries.clear();
+        }
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    public long getEvictionCount() {
+        return evictions.get();
+    }
+
+    @Override
+    public String toString() {
+        return "EvaluationCache{size=" + size() + ", hits=" + hits.get() + ", misses=" + misses.get() +
+            ", evictions=" + evictions.get() + "}";
+    }
+
+}
@@ -0,0 +1,405 @@
+package util;
+
+import DTOs.*;
+import com.mongodb.MongoClientSettings;
+import org.bson.BsonReader;
+import org.bson.BsonType;
+import org.bson.BsonWriter;
+import org.bson.codecs.Codec;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.EncoderContext;
+import org.bson.codecs.configuration.CodecProvider;
+import org.bson.codecs.configuration.CodecRegistries;
+import org.bson.codecs.configuration.CodecRegistry;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static util.Constants.*;
+
+/**
+* Codecs that decode the evaluations stored in MongoDB directly into the evaluation DTOs, reading each
+* document once from the BSON reader, without building an intermediate Document nor converting every
+* field into a String. The produced DTOs are the same ones built by Common.process*Buckets.
+*
+* MetricEvaluationDTO, FactorEvaluationDTO and StrategicIndicatorEvaluationDTO are decoded from the
+* {_id, documents: [evaluations]} buckets returned by the Queries pipelines, while EvaluationDTO is decoded
+* from a single evaluation document.
+*/
+public class EvaluationCodecs {
+
+    private static final CodecProvider PROVIDER = new CodecProvider() {
+        @Override
+        @SuppressWarnings("unchecked")
+        public <T> Codec<T> get(Class<T> clazz, CodecRegistry registry) {
+            if (clazz == EvaluationDTO.class) return (Codec<T>) new EvaluationCodec();
+            if (clazz == MetricEvaluationDTO.class) return (Codec<T>) new MetricEvaluationCodec();
+            if (clazz == FactorEvaluationDTO.class) return (Codec<T>) new FactorEvaluationCodec();
+            if (clazz == StrategicIndicatorEvaluationDTO.class) return (Codec<T>) new StrategicIndicatorEvaluationCodec();
+            return null;
+        }
+    };
+
+    private static final CodecRegistry REGISTRY = CodecRegistries.fromRegistries(
+        CodecRegistries.fromProviders(PROVIDER),
+        MongoClientSettings.getDefaultCodecRegistry()
+    );
+
+    public static CodecProvider getCodecProvider() {
+        return PROVIDER;
+    }
+
+    /**
+    * Get a CodecRegistry containing the evaluation codecs and the default codecs of the driver.
+    *
+    * @return The CodecRegistry.
+    */
+    public static CodecRegistry getCodecRegistry() {
+        return REGISTRY;
+    }
+
+    /**
+    * Fields of the entity read from one evaluation document. Like in Common.process*Buckets, the entity
+    * takes the values of the last document of its bucket.
+    */
+    private static class ElementFields {
+        String ID;
+        String name;
+        String description;
+        String project;
+        ArrayList<String> parents;
+        EstimationEvaluationDTO estimation;
+    }
+
+    /**
+    * Read an evaluation document.
+    *
+    * @param reader The reader, positioned at the start of the document.
+    * @param QMLevel The QMLevel of the evaluation, or null if only the EvaluationDTO has to be read.
+    * @param fields Where the fields of the entity are stored (only if QMLevel is not null).
+    *
+    * @return The evaluation.
+    */
+    private static EvaluationDTO readEvaluation(BsonReader reader, QMLevel QMLevel, ElementFields fields) {
+        String ID = null, datasource = null, rationale = null;
+        LocalDate evaluationDate = LocalDate.MIN;
+        float value = Float.NaN;
+        Integer mismatchDays = null;
+        ArrayList<String> missingElements = null;
+        String elementId = null, name = null, description = null, project = null;
+        ArrayList<String> parents = null;
+        List<QuadrupletDTO<Integer, String, Float, Float>> estimation = null;
+
+        String idField = QMLevel != null ? Queries.getIDtoGroup(QMLevel) : null;
+        String parentsField = QMLevel == Constants.QMLevel.metrics ? ARRAY_FACTORS :
+            QMLevel == Constants.QMLevel.factors ? ARRAY_STRATEGIC_INDICATORS : null;
+        String missingField = QMLevel == Constants.QMLevel.factors ? MISSING_METRICS :
+            QMLevel == Constants.QMLevel.strategic_indicators ? MISSING_FACTORS : null;
+
+        reader.readStartDocument();
+        while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+            String field = reader.readName();
+            if (field.equals("_id")) ID = readString(reader);
+            else if (field.equals(DATA_SOURCE)) datasource = readString(reader);
+            else if (field.equals(EVALUATION_DATE)) evaluationDate = readDate(reader);
+            else if (field.equals(VALUE)) value = readFloat(reader);
+            else if (field.equals(RATIONALE)) rationale = readString(reader);
+            else if (QMLevel == null) reader.skipValue();
+            else if (field.equals(idField)) elementId = readString(reader);
+            else if (field.equals(NAME)) name = readString(reader);
+            else if (field.equals(DESCRIPTION)) description = readString(reader);
+            else if (field.equals(PROJECT)) project = readString(reader);
+            else if (field.equals(parentsField)) parents = readStringArray(reader);
+            else if (field.equals(missingField)) missingElements = readStringArray(reader);
+            else if (field.equals(DATES_MISMATCH) && missingField != null) mismatchDays = readInteger(reader);
+            else if (field.equals(ESTIMATION) && QMLevel == Constants.QMLevel.strategic_indicators)
+                estimation = readEstimation(reader);
+            else reader.skipValue();
+        }
+        reader.readEndDocument();
+
+        EvaluationDTO eval = new EvaluationDTO(String.valueOf(ID), datasource, evaluationDate, value, rationale);
+        if (mismatchDays != null) eval.setMismatchDays(mismatchDays);
+        if (missingElements != null) eval.setMissingElements(missingElements);
+
+        if (fields != null) {
+            fields.ID = String.valueOf(elementId);
+            fields.name = Queries.getStringFromObjectOrDefault(name, fields.ID);
+            fields.description = Queries.getStringFromObjectOrDefault(description, "");
+            fields.project = Queries.getStringFromObjectOrDefault(project, "");
+            fields.parents = parents;
+            fields.estimation = estimation != null ? new EstimationEvaluationDTO(estimation) : null;
+        }
+        return eval;
+    }
+
+    private static String readString(BsonReader reader) {
+        switch (reader.getCurrentBsonType()) {
+            case STRING:
+                return reader.readString();
+            case OBJECT_ID:
+                return reader.readObjectId().toHexString();
+            case INT32:
+                return String.valueOf(reader.readInt32());
+            case INT64:
+                return String.valueOf(reader.readInt64());
+            case DOUBLE:
+                return String.valueOf(reader.readDouble());
+            case BOOLEAN:
+                return String.valueOf(reader.readBoolean());
+            case NULL:
+                reader.readNull();
+                return null;
+            default:
+                reader.skipValue();
+                return null;
+        }
+    }
+
+    private static float readFloat(BsonReader reader) {
+        switch (reader.getCurrentBsonType()) {
+            case DOUBLE:
+                return (float) reader.readDouble();
+            case INT32:
+                return reader.readInt32();
+            case INT64:
+                return reader.readInt64();
+            case STRING:
+                try {
+                    return Float.parseFloat(reader.readString());
+                } catch (NumberFormatException e) {
+                    return Float.NaN;
+                }
+            default:
+                reader.skipValue();
+                return Float.NaN;
+        }
+    }
+
+    private static Float readNullableFloat(BsonReader reader) {
+        BsonType type = reader.getCurrentBsonType();
+        if (type == BsonType.DOUBLE || type == BsonType.INT32 || type == BsonType.INT64 || type == BsonType.STRING) {
+            float value = readFloat(reader);
+            return Float.isNaN(value) && type == BsonType.STRING ? null : value;
+        }
+        reader.skipValue();
+        return null;
+    }
+
+    private static Integer readInteger(BsonReader reader) {
+        switch (reader.getCurrentBsonType()) {
+            case INT32:
+                return reader.readInt32();
+            case INT64:
+                return (int) reader.readInt64();
+            case DOUBLE:
+                return (int) reader.readDouble();
+            default:
+                reader.skipValue();
+                return null;
+        }
+    }
+
+    private static LocalDate readDate(BsonReader reader) {
+        if (reader.getCurrentBsonType() == BsonType.STRING) {
+            try {
+                return LocalDate.parse(reader.readString());
+            } catch (DateTimeParseException d) {
+                return LocalDate.MIN;
+            }
+        }
+        if (reader.getCurrentBsonType() == BsonType.DATE_TIME)
+            return FormattedDates.fromEpochMillis(reader.readDateTime());
+        reader.skipValue();
+        return LocalDate.MIN;
+    }
+
+    private static ArrayList<String> readStringArray(BsonReader reader) {
+        if (reader.getCurrentBsonType() != BsonType.ARRAY) {
+            reader.skipValue();
+            return null;
+        }
+        ArrayList<String> list = new ArrayList<>();
+        reader.readStartArray();
+        while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) list.add(readString(reader));
+        reader.readEndArray();
+        return list;
+    }
+
+    private static List<QuadrupletDTO<Integer, String, Float, Float>> readEstimation(BsonReader reader) {
+        if (reader.getCurrentBsonType() != BsonType.ARRAY) {
+            reader.skipValue();
+            return null;
+        }
+        List<QuadrupletDTO<Integer, String, Float, Float>> estimation = new ArrayList<>();
+        reader.readStartArray();
+        while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+            if (reader.getCurrentBsonType() != BsonType.DOCUMENT) {
+                reader.skipValue();
+                continue;
+            }
+            Integer id = null;
+            String label = null;
+            Float value = null, upperThreshold = null;
+
+            reader.readStartDocument();
+            while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+                String field = reader.readName();
+                if (field.equals(ESTIMATION_ID)) id = readInteger(reader);
+                else if (field.equals(ESTIMATION_LABEL)) label = readString(reader);
+                else if (field.equals(ESTIMATION_VALUE)) value = readNullableFloat(reader);
+                else if (field.equals(ESTIMATION_UPPER_THRESHOLD)) upperThreshold = readNullableFloat(reader);
+                else reader.skipValue();
+            }
+            reader.readEndDocument();
+            estimation.add(new QuadrupletDTO<>(id, String.valueOf(label), value, upperThreshold));
+        }
+        reader.readEndArray();
+        return estimation;
+    }
+
+    /**
+    * Read a {_id, documents: [evaluations]} bucket into an entity DTO.
+    *
+    * @param reader The reader, positioned at the start of the bucket.
+    * @param QMLevel The QMLevel of the evaluations.
+    * @param element The entity DTO to be filled.
+    * @param estimations Where the estimation of each evaluation is added (only for strategic indicators).
+    */
+    private static void readBucket(BsonReader reader, QMLevel QMLevel, ElemenEvaluationtDTO element,
+                                   List<EstimationEvaluationDTO> estimations) {
+        List<EvaluationDTO> evals = new ArrayList<>();
+        ElementFields fields = new ElementFields();
+
+        reader.readStartDocument();
+        while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+            String field = reader.readName();
+            if (field.equals("documents") && reader.getCurrentBsonType() == BsonType.ARRAY) {
+                reader.readStartArray();
+                while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+                    if (reader.getCurrentBsonType() != BsonType.DOCUMENT) {
+                        reader.skipValue();
+                        continue;
+                    }
+                    evals.add(readEvaluation(reader, QMLevel, fields));
+                    element.setID(fields.ID);
+                    element.setName(fields.name);
+                    element.setDescription(fields.description);
+                    element.setProject(fields.project);
+                    if (element instanceof MetricEvaluationDTO)
+                        ((MetricEvaluationDTO) element).setFactors(fields.parents);
+                    else if (element instanceof FactorEvaluationDTO)
+                        ((FactorEvaluationDTO) element).setStrategicIndicators(fields.parents);
+                    if (estimations != null) estimations.add(fields.estimation);
+                }
+                reader.readEndArray();
+            }
+            else reader.skipValue();
+        }
+        reader.readEndDocument();
+        element.setEvaluations(evals);
+    }
+
+    private static void writeEvaluation(BsonWriter writer, EvaluationDTO eval) {
+        writer.writeStartDocument();
+        writer.writeString("_id", eval.getID());
+        writer.writeString(DATA_SOURCE, eval.getDatasource() != null ? eval.getDatasource() : "null");
+        if (eval.getEvaluationDate() != null && FormattedDates.getDateStorage() == DateStorage.date)
+            writer.writeDateTime(EVALUATION_DATE, FormattedDates.toDate(eval.getEvaluationDate()).getTime());
+        else writer.writeString(EVALUATION_DATE, String.valueOf(eval.getEvaluationDate()));
+        if (eval.getValue() != null) writer.writeDouble(VALUE, eval.getValue());
+        else writer.writeNull(VALUE);
+        if (eval.getRationale() != null) writer.writeString(RATIONALE, eval.getRationale());
+        else writer.writeNull(RATIONALE);
+        writer.writeEndDocument();
+    }
+
+    private static void writeBucket(BsonWriter writer, ElemenEvaluationtDTO element) {
+        writer.writeStartDocument();
+        writer.writeString("_id", element.getID());
+        writer.writeStartArray("documents");
+        if (element.getEvaluations() != null)
+            for (EvaluationDTO eval : element.getEvaluations()) writeEvaluation(writer, eval);
+        writer.writeEndArray();
+        writer.writeEndDocument();
+    }
+
+    static class EvaluationCodec implements Codec<EvaluationDTO> {
+        @Override
+        public EvaluationDTO decode(BsonReader reader, DecoderContext decoderContext) {
+            return readEvaluation(reader, null, null);
+        }
+
+        @Override
+        public void encode(BsonWriter writer, EvaluationDTO value, EncoderContext encoderContext) {
+            writeEvaluation(writer, value);
+        }
+
+        @Override
+        public Class<EvaluationDTO> getEncoderClass() {
+            return EvaluationDTO.class;
+        }
+    }
+
+    static class MetricEvaluationCodec implements Codec<MetricEvaluationDTO> {
+        @Override
+        public MetricEvaluationDTO decode(BsonReader reader, DecoderContext decoderContext) {
+            MetricEvaluationDTO metricEval = new MetricEvaluationDTO();
+            readBucket(reader, Constants.QMLevel.metrics, metricEval, null);
+            return metricEval;
+        }
+
+        @Override
+        public void encode(BsonWriter writer, MetricEvaluationDTO value, EncoderContext encoderContext) {
+            writeBucket(writer, value);
+        }
+
+        @Override
+        public Class<MetricEvaluationDTO> getEncoderClass() {
+            return MetricEvaluationDTO.class;
+        }
+    }
+
+    static class FactorEvaluationCodec implements Codec<FactorEvaluationDTO> {
+        @Override
+        public FactorEvaluationDTO decode(BsonReader reader, DecoderContext decoderContext) {
+            FactorEvaluationDTO factorEval = new FactorEvaluationDTO();
+            readBucket(reader, Constants.QMLevel.factors, factorEval, null);
+            return factorEval;
+        }
+
+        @Override
+        public void encode(BsonWriter writer, FactorEvaluationDTO value, EncoderContext encoderContext) {
+            writeBucket(writer, value);
+        }
+
+        @Override
+        public Class<FactorEvaluationDTO> getEncoderClass() {
+            return FactorEvaluationDTO.class;
+        }
+    }
+
+    static class StrategicIndicatorEvaluationCodec implements Codec<StrategicIndicatorEvaluationDTO> {
+        @Override
+        public StrategicIndicatorEvaluationDTO decode(BsonReader reader, DecoderContext decoderContext) {
+            StrategicIndicatorEvaluationDTO siEval = new StrategicIndicatorEvaluationDTO();
+            List<EstimationEvaluationDTO> estimations = new ArrayList<>();
+            readBucket(reader, Constants.QMLevel.strategic_indicators, siEval, estimations);
+            siEval.setEstimation(estimations);
+            return siEval;
+        }
+
+        @Override
+        public void encode(BsonWriter writer, StrategicIndicatorEvaluationDTO value, EncoderContext encoderContext) {
+            writeBucket(writer, value);
+        }
+
+        @Override
+        public Class<StrategicIndicatorEvaluationDTO> getEncoderClass() {
+            return StrategicIndicatorEvaluationDTO.class;
+        }
+    }
+
+}
@@ -0,0 +1,109 @@
+package util;
+
+import DTOs.ElemenEvaluationtDTO;
+import DTOs.EvaluationDTO;
+import DTOs.FactorEvaluationDTO;
+import DTOs.MetricEvaluationDTO;
+import com.mongodb.client.MongoCursor;
+import org.bson.Document;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+
+/**
+* Iterator that builds the evaluation DTOs of the entities while the evaluations are read from a cursor.
+* The cursor must return the evaluations sorted by entity, so that all the evaluations of an entity are
+* consecutive. Only the evaluations of the entity being built are kept in memory.
+* The iterator must be closed when it is not fully consumed, to release the cursor.
+*
+* @param <T> The DTO of the entities (MetricEvaluationDTO or FactorEvaluationDTO).
+*/
+public abstract class EvaluationIterator<T extends ElemenEvaluationtDTO> implements Iterator<T>, Closeable {
+
+    private final MongoCursor<Document> cursor;
+    private final String group;
+    private Document pending;
+
+    private EvaluationIterator(MongoCursor<Document> cursor, Constants.QMLevel QMLevel) {
+        this.cursor = cursor;
+        this.group = Queries.getIDtoGroup(QMLevel);
+    }
+
+    /**
+    * Create an iterator of MetricEvaluationDTO over a cursor of metrics' evaluations.
+    *
+    * @param cursor The cursor, sorted by metric.
+    *
+    * @return The iterator.
+    */
+    public static EvaluationIterator<MetricEvaluationDTO> metrics(MongoCursor<Document> cursor) {
+        return new EvaluationIterator<MetricEvaluationDTO>(cursor, Constants.QMLevel.metrics) {
+            MetricEvaluationDTO newElement() {
+                return new MetricEvaluationDTO();
+            }
+            void addDocument(MetricEvaluationDTO element, List<EvaluationDTO> evals, Document doc) {
+                Common.processMetricDocument(element, evals, doc);
+            }
+        };
+    }
+
+    /**
+    * Create an iterator of FactorEvaluationDTO over a cursor of factors' evaluations.
+    *
+    * @param cursor The cursor, sorted by factor.
+    *
+    * @return The iterator.
+    */
+    public static EvaluationIterator<FactorEvaluationDTO> factors(MongoCursor<Document> cursor) {
+        return new EvaluationIterator<FactorEvaluationDTO>(cursor, Constants.QMLevel.factors) {
+            FactorEvaluationDTO newElement() {
+                return new FactorEvaluationDTO();
+            }
+            void addDocument(FactorEvaluationDTO element, List<EvaluationDTO> evals, Document doc) {
+                Common.processFactorDocument(element, evals, doc);
+            }
+        };
+    }
+
+    abstract T newElement();
+
+    abstract void addDocument(T element, List<EvaluationDTO> evals, Document doc);
+
+    @Override
+    public boolean hasNext() {
+        return pending != null || cursor.hasNext();
+    }
+
+    @Override
+    public T next() {
+        if (!hasNext()) throw new NoSuchElementException();
+        Document doc = pending != null ? pending : cursor.next();
+        pending = null;
+
+        T element = newElement();
+        List<EvaluationDTO> evals = new ArrayList<>();
+        Object id = doc.get(group);
+        addDocument(element, evals, doc);
+
+        while (cursor.hasNext()) {
+            doc = cursor.next();
+            if (!Objects.equals(id, doc.get(group))) {
+                pending = doc;
+                break;
+            }
+            addDocument(element, evals, doc);
+        }
+        element.setEvaluations(evals);
+        return element;
+    }
+
+    @Override
+    public void close() {
+        cursor.close();
+    }
+
+}
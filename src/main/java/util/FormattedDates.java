@@ -1,9 +1,147 @@
 package util;
+import com.mongodb.client.model.Filters;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+
 import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.Arrays;
+import java.util.Date;
+
+import static util.Constants.*;
 
 public class FormattedDates {
 
+    private static final long DAY_MILLIS = 24 * 60 * 60 * 1000L;
+
     public static String formatDate(LocalDate day) {
         return day.toString();
     }
+
+    /**
+    * Get the type of the evaluationDate fields of the current ClientContext (see ClientContext.setDateStorage).
+    *
+    * @return The DateStorage, or DateStorage.string if the connection has not been initialized.
+    */
+    public static DateStorage getDateStorage() {
+        ClientContext context = ClientContext.currentOrNull();
+        return context != null ? context.getDateStorage() : DateStorage.string;
+    }
+
+    /**
+    * Convert a date into the value written in the evaluationDate fields (the filters match both types, see
+    * dateRange).
+    *
+    * @param day The date.
+    *
+    * @return A yyyy-MM-dd String, or a Date at 00:00 UTC, depending on the DateStorage.
+    */
+    public static Object toStoredDate(LocalDate day) {
+        if (getDateStorage() == DateStorage.date) return toDate(day);
+        return formatDate(day);
+    }
+
+    /**
+    * Convert a yyyy-MM-dd date into the value stored in the evaluationDate fields.
+    *
+    * @param day The date, as a yyyy-MM-dd String.
+    *
+    * @return The same String, or a Date at 00:00 UTC, depending on the DateStorage.
+    */
+    public static Object toStoredDate(String day) {
+        if (getDateStorage() == DateStorage.date) return toDate(LocalDate.parse(day));
+        return day;
+    }
+
+    /**
+    * Build the filter of the evaluationDate fields in a range of dates (both inclusive). It matches both the
+    * yyyy-MM-dd strings and the Dates, so the ranged reads are complete while DateMigration converts a collection.
+    *
+    * @param from Initial date of the range.
+    * @param to Final date of the range.
+    *
+    * @return The filter, which can use the indexes on evaluationDate.
+    */
+    public static Bson dateRange(LocalDate from, LocalDate to) {
+        return Filters.or(
+            Filters.and(Filters.gte(EVALUATION_DATE, formatDate(from)), Filters.lte(EVALUATION_DATE, formatDate(to))),
+            Filters.and(Filters.gte(EVALUATION_DATE, toDate(from)), Filters.lte(EVALUATION_DATE, toDate(to)))
+        );
+    }
+
+    /**
+    * Build the filter of the evaluationDate fields equal to a date, stored either as a String or as a Date.
+    *
+    * @param day The date.
+    *
+    * @return The filter.
+    */
+    public static Bson dateEquals(LocalDate day) {
+        return Filters.in(EVALUATION_DATE, Arrays.<Object>asList(formatDate(day), toDate(day)));
+    }
+
+    /**
+    * Build the filter of the evaluationDate fields equal to a yyyy-MM-dd date (see dateEquals(LocalDate)).
+    *
+    * @param day The date, as a yyyy-MM-dd String.
+    *
+    * @return The filter.
+    */
+    public static Bson dateEquals(String day) {
+        try {
+            return dateEquals(LocalDate.parse(day));
+        } catch (DateTimeParseException e) {
+            // Not a date: only matches the same string
+            return Filters.eq(EVALUATION_DATE, day);
+        }
+    }
+
+    /**
+    * Build the aggregation expression that converts a date field, stored either as a String or as a Date, into a
+    * Date (requires MongoDB 3.6).
+    *
+    * @param field The path of the field, e.g. "$evaluationDate".
+    *
+    * @return The expression.
+    */
+    static Document toDateExpression(String field) {
+        return new Document("$cond", Arrays.asList(
+            new Document("$eq", Arrays.asList(new Document("$type", field), "date")),
+            field,
+            new Document("$dateFromString", new Document("dateString", field))
+        ));
+    }
+
+    static Date toDate(LocalDate day) {
+        return new Date(day.toEpochDay() * DAY_MILLIS);
+    }
+
+    /**
+    * Convert the value of an evaluationDate field, stored either as a String or as a Date, into a LocalDate.
+    *
+    * @param stored The value of the field.
+    *
+    * @return The date, or null if the value is null.
+    */
+    public static LocalDate parseStoredDate(Object stored) {
+        if (stored == null) return null;
+        if (stored instanceof Date) return fromEpochMillis(((Date) stored).getTime());
+        return LocalDate.parse(stored.toString());
+    }
+
+    /**
+    * Convert the value of an evaluationDate field, stored either as a String or as a Date, into a yyyy-MM-dd String.
+    *
+    * @param stored The value of the field.
+    *
+    * @return The date, or null if the value is null.
+    */
+    public static String formatStoredDate(Object stored) {
+        if (stored instanceof Date) return formatDate(fromEpochMillis(((Date) stored).getTime()));
+        return stored != null ? stored.toString() : null;
+    }
+
+    static LocalDate fromEpochMillis(long millis) {
+        return LocalDate.ofEpochDay(Math.floorDiv(millis, DAY_MILLIS));
+    }
 }
@@ -0,0 +1,178 @@
+package util;
+
+import DTOs.ElemenEvaluationtDTO;
+import DTOs.EstimationEvaluationDTO;
+import DTOs.EvaluationDTO;
+import DTOs.StrategicIndicatorEvaluationDTO;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+* Result set of a ranged read (e.g. Metric.getEvaluations(projectId, from, to)) kept up to date by polling only
+* the evaluations added or changed since the previous poll.
+*
+* The watermark is the newest evaluationDate seen. Each poll reads the evaluations from the watermark (inclusive,
+* since the evaluations of that day can still be rewritten) to the end of the window, replaces the held
+* evaluations of those days and drops the ones that left the window. In steady state, a poll only reads the
+* evaluations of the last day. Evaluations rewritten or deleted before the watermark are not detected; call
+* reset to read the whole window again.
+* Its methods are synchronized, so several threads may poll the same result set, but the merge updates the held
+* DTOs in place: the DTOs returned by a poll are modified by the following polls, so a thread that keeps reading
+* them while another one polls must copy them first.
+*
+* @param <T> The DTO of the entities (MetricEvaluationDTO, FactorEvaluationDTO or StrategicIndicatorEvaluationDTO).
+*/
+public class IncrementalEvaluations<T extends ElemenEvaluationtDTO> {
+
+    /**
+    * Ranged read of the evaluations of the entities, such as Metric.getEvaluations(projectId, from, to).
+    */
+    public interface RangedRead<T> {
+        List<T> read(LocalDate from, LocalDate to);
+    }
+
+    private final RangedRead<T> read;
+    private final Map<String, T> evaluations = new TreeMap<>();
+    private LocalDate watermark;
+    private int lastDeltaSize;
+
+    /**
+    * Create an empty result set, which is filled in the first poll.
+    *
+    * @param read The ranged read used to fetch the evaluations.
+    */
+    public IncrementalEvaluations(RangedRead<T> read) {
+        this.read = read;
+    }
+
+    /**
+    * Read the evaluations added or changed since the previous poll and merge them into the result set.
+    *
+    * @param from Initial date of the window.
+    * @param to Final date of the window.
+    *
+    * @return The evaluations of the entities in the window, sorted by entity ID.
+    */
+    public synchronized List<T> poll(LocalDate from, LocalDate to) {
+        LocalDate since = watermark != null && watermark.isAfter(from) ? watermark : from;
+        List<T> delta = since.isAfter(to) ? new ArrayList<>() : read.read(since, to);
+        merge(delta, from, since, to);
+        return getEvaluations();
+    }
+
+    /**
+    * Merge the evaluations read from a date into the result set.
+    *
+    * @param delta The evaluations of the entities from the date since.
+    * @param from Initial date of the window: the older evaluations are dropped.
+    * @param since Date from which the held evaluations are replaced by the delta.
+    * @param to Final date of the window: the newer evaluations are dropped.
+    */
+    private void merge(List<T> delta, LocalDate from, LocalDate since, LocalDate to) {
+        lastDeltaSize = 0;
+        Map<String, T> merged = new TreeMap<>();
+
+        for (T element : evaluations.values()) {
+            keepEvaluations(element, from, since, to);
+            if (!element.getEvaluations().isEmpty()) merged.put(element.getID(), element);
+        }
+        for (T element : delta) {
+            T held = merged.get(element.getID());
+            if (held != null) {
+                List<EvaluationDTO> evals = new ArrayList<>(held.getEvaluations());
+                evals.addAll(element.getEvaluations());
+                if (element instanceof StrategicIndicatorEvaluationDTO) {
+                    List<EstimationEvaluationDTO> estimations = getEstimations(held);
+                    if (((StrategicIndicatorEvaluationDTO) element).getEstimation() != null)
+                        estimations.addAll(((StrategicIndicatorEvaluationDTO) element).getEstimation());
+                    ((StrategicIndicatorEvaluationDTO) element).setEstimation(estimations);
+                }
+                element.setEvaluations(evals);
+            }
+            merged.put(element.getID(), element);
+
+            for (EvaluationDTO eval : element.getEvaluations()) {
+                LocalDate date = eval.getEvaluationDate();
+                if (date != null && !date.isBefore(since)) {
+                    lastDeltaSize++;
+                    if (watermark == null || date.isAfter(watermark)) watermark = date;
+                }
+            }
+        }
+
+        evaluations.clear();
+        evaluations.putAll(merged);
+    }
+
+    /**
+    * Keep the evaluations of an entity in [from, since) and not after to, together with their estimations (if any).
+    */
+    private static void keepEvaluations(ElemenEvaluationtDTO element, LocalDate from, LocalDate since, LocalDate to) {
+        List<EvaluationDTO> evals = element.getEvaluations();
+        List<EstimationEvaluationDTO> estimations = element instanceof StrategicIndicatorEvaluationDTO ?
+            ((StrategicIndicatorEvaluationDTO) element).getEstimation() : null;
+
+        List<EvaluationDTO> keptEvals = new ArrayList<>();
+        List<EstimationEvaluationDTO> keptEstimations = new ArrayList<>();
+        for (int i = 0; i < evals.size(); ++i) {
+            LocalDate date = evals.get(i).getEvaluationDate();
+            if (date == null || date.isBefore(from) || !date.isBefore(since) || date.isAfter(to)) continue;
+            keptEvals.add(evals.get(i));
+            if (estimations != null) keptEstimations.add(i < estimations.size() ? estimations.get(i) : null);
+        }
+        element.setEvaluations(keptEvals);
+        if (estimations != null) ((StrategicIndicatorEvaluationDTO) element).setEstimation(keptEstimations);
+    }
+
+    /**
+    * Get the estimations of a strategic indicator, one for each evaluation (null if it has none).
+    */
+    private static List<EstimationEvaluationDTO> getEstimations(ElemenEvaluationtDTO element) {
+        List<EstimationEvaluationDTO> estimations = new ArrayList<>();
+        List<EstimationEvaluationDTO> current = ((StrategicIndicatorEvaluationDTO) element).getEstimation();
+        for (int i = 0; i < element.getEvaluations().size(); ++i)
+            estimations.add(current != null && i < current.size() ? current.get(i) : null);
+        return estimations;
+    }
+
+    /**
+    * Get the evaluations held by the result set. The returned DTOs are updated by the following polls.
+    *
+    * @return The evaluations of the entities, sorted by entity ID.
+    */
+    public synchronized List<T> getEvaluations() {
+        return new ArrayList<>(evaluations.values());
+    }
+
+    /**
+    * Get the newest evaluationDate seen, from which the next poll reads.
+    *
+    * @return The watermark, or null before the first poll.
+    */
+    public synchronized LocalDate getWatermark() {
+        return watermark;
+    }
+
+    /**
+    * Get the number of evaluations read by the last poll.
+    *
+    * @return The number of evaluations.
+    */
+    public synchronized int getLastDeltaSize() {
+        return lastDeltaSize;
+    }
+
+    /**
+    * Discard the result set, so that the next poll reads the whole window.
+    */
+    public synchronized void reset() {
+        evaluations.clear();
+        watermark = null;
+        lastDeltaSize = 0;
+    }
+
+}
@@ -0,0 +1,211 @@
+package util;
+
+import com.mongodb.MongoClientSettings;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.IndexModel;
+import com.mongodb.client.model.IndexOptions;
+import com.mongodb.client.model.Indexes;
+import org.bson.BsonDocument;
+import org.bson.BsonValue;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static util.Constants.*;
+
+/**
+* Creates and verifies the secondary indexes of the quality model collections.
+* Note that, for historical reasons, Queries calls "index" the collection of each project and QMLevel,
+* while this class deals with the MongoDB indexes defined on those collections.
+*/
+public class IndexManager {
+
+    /**
+    * Get the indexes required by the queries performed over a QMLevel collection.
+    *
+    * @param QMLevel The QMLevel (metrics, factors, strategic_indicators or relations).
+    *
+    * @return The list of index definitions, each one with its own name.
+    */
+    static List<IndexModel> getIndexModels(QMLevel QMLevel) {
+        List<IndexModel> indexes = new ArrayList<>();
+        switch (QMLevel) {
+            case metrics:
+                // getLatest, getLatestElement, getRangedElement
+                indexes.add(elementIndex(METRIC_ID));
+                // getLatest and getRanged filtered by parent factor
+                indexes.add(parentIndex(ARRAY_FACTORS));
+                // getRanged without parent
+                indexes.add(dateIndex());
+                break;
+            case factors:
+                indexes.add(elementIndex(FACTOR_ID));
+                indexes.add(parentIndex(ARRAY_STRATEGIC_INDICATORS));
+                indexes.add(dateIndex());
+                break;
+            case strategic_indicators:
+                indexes.add(elementIndex(STRATEGIC_INDICATOR_ID));
+                indexes.add(dateIndex());
+                break;
+            case relations:
+                // getRelations, getCurrentRelations and getLatestRelationsDate
+                indexes.add(new IndexModel(Indexes.descending(EVALUATION_DATE),
+                    new IndexOptions().name(EVALUATION_DATE + "_desc")));
+                // getFactorMetricsRelations
+                indexes.add(new IndexModel(
+                    Indexes.ascending(PROJECT, EVALUATION_DATE, TARGETTPYE),
+                    new IndexOptions().name(PROJECT + "_" + EVALUATION_DATE + "_" + TARGETTPYE)));
+                break;
+        }
+        return indexes;
+    }
+
+    private static IndexModel elementIndex(String elementField) {
+        return new IndexModel(
+            Indexes.compoundIndex(Indexes.ascending(elementField), Indexes.descending(EVALUATION_DATE)),
+            new IndexOptions().name(elementField + "_" + EVALUATION_DATE));
+    }
+
+    private static IndexModel parentIndex(String parentArray) {
+        return new IndexModel(
+            Indexes.ascending(parentArray, EVALUATION_DATE),
+            new IndexOptions().name(parentArray + "_" + EVALUATION_DATE));
+    }
+
+    private static IndexModel dateIndex() {
+        return new IndexModel(Indexes.ascending(EVALUATION_DATE), new IndexOptions().name(EVALUATION_DATE));
+    }
+
+    /**
+    * Create the missing indexes of every QMLevel collection of a project. Collections that do not exist
+    * yet are skipped. Running it several times (e.g. at every startup) has no further effects.
+    *
+    * @param projectId The ID of the project.
+    *
+    * @return A Map containing, for each collection, the names of the indexes that have been created.
+    */
+    public static Map<String, List<String>> prepareIndexes(String projectId) {
+        Map<String, List<String>> created = new LinkedHashMap<>();
+        for (QMLevel QMLevel : QMLevel.values()) {
+            String collectionName = Queries.getIndex(projectId, QMLevel);
+            if (ClientContext.current().getCollectionRegistry().exists(collectionName))
+                created.put(collectionName, prepareIndexes(projectId, QMLevel));
+            else System.out.println("INDEXES SKIPPED, COLLECTION DOES NOT EXIST: " + collectionName);
+        }
+        return created;
+    }
+
+    /**
+    * Create the missing indexes of a QMLevel collection of a project.
+    *
+    * @param projectId The ID of the project.
+    * @param QMLevel The QMLevel (metrics, factors, strategic_indicators or relations).
+    *
+    * @return The names of the indexes that have been created.
+    */
+    public static List<String> prepareIndexes(String projectId, QMLevel QMLevel) {
+        MongoCollection<Document> collection = getCollection(projectId, QMLevel);
+        List<Document> existing = collection.listIndexes().into(new ArrayList<>());
+        List<IndexModel> missing = new ArrayList<>();
+
+        for (IndexModel index : getIndexModels(QMLevel))
+            if (findIndex(existing, index) == null) missing.add(index);
+
+        if (missing.isEmpty()) return Collections.emptyList();
+        List<String> created = collection.createIndexes(missing);
+        for (String name : created)
+            System.out.println("INDEX CREATED: " + collection.getNamespace().getCollectionName() + " " + name);
+        return created;
+    }
+
+    /**
+    * Get the indexes required by the queries which are not defined in a QMLevel collection of a project.
+    *
+    * @param projectId The ID of the project.
+    * @param QMLevel The QMLevel (metrics, factors, strategic_indicators or relations).
+    *
+    * @return The names of the missing indexes.
+    */
+    public static List<String> getMissingIndexes(String projectId, QMLevel QMLevel) {
+        MongoCollection<Document> collection = getCollection(projectId, QMLevel);
+        List<Document> existing = collection.listIndexes().into(new ArrayList<>());
+        List<String> missing = new ArrayList<>();
+
+        for (IndexModel index : getIndexModels(QMLevel)) {
+            if (findIndex(existing, index) == null) {
+                missing.add(index.getOptions().getName());
+                System.out.println("INDEX MISSING: " + collection.getNamespace().getCollectionName() + " "
+                    + index.getOptions().getName());
+            }
+        }
+        return missing;
+    }
+
+    /**
+    * Get the indexes of a QMLevel collection of a project that have not been used by any query since
+    * the MongoDB server started (according to $indexStats). The _id index is never reported.
+    *
+    * @param projectId The ID of the project.
+    * @param QMLevel The QMLevel (metrics, factors, strategic_indicators or relations).
+    *
+    * @return The names of the unused indexes.
+    */
+    public static List<String> getUnusedIndexes(String projectId, QMLevel QMLevel) {
+        MongoCollection<Document> collection = getCollection(projectId, QMLevel);
+        List<Document> stats = collection.aggregate(Collections.singletonList(
+            new Document("$indexStats", new Document()))).into(new ArrayList<>());
+        List<String> unused = new ArrayList<>();
+
+        for (Document stat : stats) {
+            String name = stat.getString("name");
+            Document accesses = (Document) stat.get("accesses");
+            Number ops = accesses != null ? (Number) accesses.get("ops") : null;
+            if (!"_id_".equals(name) && (ops == null || ops.longValue() == 0)) {
+                unused.add(name);
+                System.out.println("INDEX UNUSED: " + collection.getNamespace().getCollectionName() + " " + name);
+            }
+        }
+        return unused;
+    }
+
+    private static MongoCollection<Document> getCollection(String projectId, QMLevel QMLevel) {
+        MongoDatabase database = ClientContext.current().getMongoDatabase();
+        String collectionName = Queries.getIndex(projectId, QMLevel);
+        Queries.collectionExists(collectionName);
+        return database.getCollection(collectionName);
+    }
+
+    /**
+    * Look for an existing index with the same keys (fields, order and direction) as the provided definition.
+    * The name is not compared, so indexes created by hand with other names are also recognized.
+    *
+    * @param existing The indexes returned by listIndexes.
+    * @param index The index definition.
+    *
+    * @return The existing index, or null if there is none.
+    */
+    private static Document findIndex(List<Document> existing, IndexModel index) {
+        List<String> keys = normalizeKeys(index.getKeys());
+        for (Document e : existing)
+            if (keys.equals(normalizeKeys((Bson) e.get("key")))) return e;
+        return null;
+    }
+
+    private static List<String> normalizeKeys(Bson keys) {
+        List<String> normalized = new ArrayList<>();
+        BsonDocument document = keys.toBsonDocument(BsonDocument.class, MongoClientSettings.getDefaultCodecRegistry());
+        for (Map.Entry<String, BsonValue> entry : document.entrySet()) {
+            BsonValue direction = entry.getValue();
+            if (direction.isNumber()) normalized.add(entry.getKey() + ":" + direction.asNumber().intValue());
+            else normalized.add(entry.getKey() + ":" + direction.asString().getValue());
+        }
+        return normalized;
+    }
+
+}
@@ -0,0 +1,222 @@
+package util;
+
+import com.mongodb.MongoClientSettings;
+import com.mongodb.MongoException;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.Accumulators;
+import com.mongodb.client.model.Aggregates;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.Sorts;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.UpdateOptions;
+import com.mongodb.client.model.WriteModel;
+import org.bson.BsonDocument;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import static util.Constants.*;
+
+/**
+* Materialized views holding the latest evaluation of each entity: the collection latest.&lt;level&gt;.&lt;project&gt;
+* contains one {_id: entity ID, document: latest evaluation} document per entity of the level collection.
+*
+* The views are optional: they are only used when they are enabled in the ClientContext
+* (see ClientContext.setLatestCollectionsEnabled) and the view of the project and QMLevel has been built with
+* rebuild. Then Queries.getLatest (of every entity) and getLatestElement read the view instead of grouping the
+* whole history, and the writers of Queries and the WriteBehindQueue upsert the view with every evaluation which is not older than
+* the stored one. Evaluations written by other processes are only visible in the view after a rebuild.
+* Maintaining the views requires MongoDB 4.2 (updates with aggregation pipelines).
+*
+* The reads filtered by a parent keep grouping the history: they return the latest evaluation of each entity
+* among those associated with the parent, while the view only holds the latest evaluation of each entity, whose
+* parents may have changed since.
+*/
+public class LatestCollections {
+
+    private static final String LATEST_PREFIX = "latest.";
+    private static final String DOCUMENT = "document";
+
+    /**
+    * Get the name of the view of a project and QMLevel.
+    *
+    * @param projectId The ID of the project.
+    * @param QMLevel The QMLevel (metrics, factors or strategic_indicators).
+    *
+    * @return The name of the collection.
+    */
+    public static String getIndex(String projectId, QMLevel QMLevel) {
+        return LATEST_PREFIX + Queries.getIndex(projectId, QMLevel);
+    }
+
+    /**
+    * Build (or build again) the view of a project and QMLevel from the history of evaluations. The view is
+    * replaced atomically when it is complete; evaluations written while it is being built may be missing from it.
+    *
+    * @param projectId The ID of the project.
+    * @param QMLevel The QMLevel (metrics, factors or strategic_indicators).
+    */
+    public static void rebuild(String projectId, QMLevel QMLevel) {
+        ClientContext context = ClientContext.current();
+        String indexName = Queries.getIndex(projectId, QMLevel);
+        Queries.collectionExists(indexName);
+        String group = Queries.getIDtoGroup(QMLevel);
+        String latestIndex = getIndex(projectId, QMLevel);
+
+        List<Bson> pipeline = Arrays.asList(
+                Aggregates.sort(Sorts.orderBy(Sorts.ascending(group), Sorts.descending(EVALUATION_DATE))),
+                Aggregates.group("$" + group, Accumulators.first(DOCUMENT, "$$ROOT")),
+                Aggregates.out(latestIndex)
+        );
+        context.getMongoDatabase().getCollection(indexName).aggregate(pipeline).allowDiskUse(true).toCollection();
+
+        context.getCollectionRegistry().register(latestIndex);
+        Queries.invalidateCache(projectId);
+        System.out.println("Latest collection '" + latestIndex + "' rebuilt");
+    }
+
+    /**
+    * Check whether the view of a project and QMLevel is enabled and has been built. The views which have not
+    * been built are remembered by the CollectionRegistry until its TTL expires or rebuild registers them, so the
+    * check does not list the collections on every read.
+    */
+    static boolean isAvailable(ClientContext context, String projectId, QMLevel QMLevel) {
+        return context.isLatestCollectionsEnabled() &&
+            context.getCollectionRegistry().exists(getIndex(projectId, QMLevel));
+    }
+
+    /**
+    * Get the latest evaluations of the entities from the view, in the same form as Queries.getLatest.
+    *
+    * @param projectId The ID of the project.
+    * @param QMLevel The QMLevel (metrics, factors or strategic_indicators).
+    * @param elementId The ID of the entity to retrieve, or null to retrieve every entity.
+    * @param profile The fields of the evaluations to be retrieved.
+    * @param resultClass The class of the results: Document, or one of the DTOs decoded by EvaluationCodecs.
+    *
+    * @return A list with one {_id, documents: [latest]} bucket for each entity, sorted by entity ID.
+    */
+    static <T> List<T> getLatest(String projectId, QMLevel QMLevel, String elementId, ReadProfile profile,
+                                 Class<T> resultClass) {
+        MongoCollection<Document> collection = ClientContext.current().getMongoDatabase()
+            .getCollection(getIndex(projectId, QMLevel)).withCodecRegistry(EvaluationCodecs.getCodecRegistry());
+
+        Bson filter = elementId != null ? Filters.eq("_id", elementId) : new Document();
+
+        // Indexed read of one document per entity, reshaped into the buckets returned by the history queries
+        List<Bson> pipeline = new ArrayList<>(Arrays.asList(
+                Aggregates.match(filter),
+                Aggregates.sort(Sorts.ascending("_id"))
+        ));
+        Bson projection = Queries.getProfileProjection(profile, QMLevel);
+        if (projection != null) {
+            List<String> fields = new ArrayList<>(Collections.singletonList(DOCUMENT + "._id"));
+            BsonDocument profileFields = projection.toBsonDocument(BsonDocument.class, MongoClientSettings.getDefaultCodecRegistry());
+            for (String field : profileFields.keySet()) fields.add(DOCUMENT + "." + field);
+            pipeline.add(Aggregates.project(Projections.include(fields)));
+        }
+        pipeline.add(Aggregates.project(
+            Projections.fields(
+                Projections.computed( "documents", Collections.singletonList("$" + DOCUMENT) )
+            )
+        ));
+
+        return collection.aggregate(pipeline, resultClass).into( new ArrayList<>() );
+    }
+
+    /**
+    * Build the upsert of the view with an evaluation. The stored evaluation is replaced if the new one is newer,
+    * updated with its fields if both have the same evaluationDate, and kept otherwise.
+    *
+    * @param QMLevel The QMLevel (metrics, factors or strategic_indicators).
+    * @param update The $set update of the evaluation (see Queries.buildFactorUpdate).
+    *
+    * @return The upsert, or null if the update does not set the entity ID and the evaluationDate.
+    */
+    static WriteModel<Document> getUpsert(QMLevel QMLevel, Document update) {
+        Object set = update.get("$set");
+        if (!(set instanceof Document)) return null;
+        Document evaluation = (Document) set;
+        Object elementId = evaluation.get(Queries.getIDtoGroup(QMLevel));
+        Object date = evaluation.get(EVALUATION_DATE);
+        if (elementId == null || date == null) return null;
+
+        // Literal, so that values starting with $ are not taken as field paths
+        Document literal = new Document("$literal", evaluation);
+        // Compared as Dates, since the stored evaluation may have been written with the other DateStorage
+        Date newDate = FormattedDates.toDate(FormattedDates.parseStoredDate(date));
+        Document storedDate = FormattedDates.toDateExpression("$" + DOCUMENT + "." + EVALUATION_DATE);
+        Document document = new Document("$cond", Arrays.asList(
+            new Document("$gt", Arrays.asList(newDate, storedDate)),
+            literal,
+            new Document("$cond", Arrays.asList(
+                new Document("$eq", Arrays.asList(newDate, storedDate)),
+                new Document("$mergeObjects", Arrays.asList("$" + DOCUMENT, literal)),
+                "$" + DOCUMENT
+            ))
+        ));
+        return new UpdateOneModel<>(new Document("_id", elementId),
+            Collections.singletonList(new Document("$addFields", new Document(DOCUMENT, document))),
+            new UpdateOptions().upsert(true));
+    }
+
+    /**
+    * Upsert the view of a project and QMLevel with a set of evaluations, if it is available.
+    *
+    * @param projectId The ID of the project.
+    * @param QMLevel The QMLevel (metrics, factors or strategic_indicators).
+    * @param updates The $set updates of the evaluations.
+    */
+    static void upsert(String projectId, QMLevel QMLevel, List<Document> updates) {
+        ClientContext context = ClientContext.current();
+        if (!isAvailable(context, projectId, QMLevel)) return;
+
+        List<WriteModel<Document>> writes = new ArrayList<>();
+        for (Document update : updates) {
+            WriteModel<Document> write = getUpsert(QMLevel, update);
+            if (write != null) writes.add(write);
+        }
+        if (writes.isEmpty()) return;
+        try {
+            context.getMongoDatabase().getCollection(getIndex(projectId, QMLevel))
+                .bulkWrite(writes, new BulkWriteOptions().ordered(false));
+        } catch (MongoException e) {
+            // The evaluations are already stored: the view is repaired by the next rebuild
+            System.err.println("ERROR updating '" + getIndex(projectId, QMLevel) + "': " + e.getMessage());
+        }
+    }
+
+    /**
+    * Set the parents array of the latest evaluations whose hard ID is in a set, if the view is available.
+    *
+    * @param projectId The ID of the project.
+    * @param QMLevel The QMLevel (metrics or factors).
+    * @param hardIDs The hard IDs of the evaluations.
+    * @param parents The parents array.
+    */
+    static void setParents(String projectId, QMLevel QMLevel, List<String> hardIDs, List<String> parents) {
+        ClientContext context = ClientContext.current();
+        if (!isAvailable(context, projectId, QMLevel)) return;
+        try {
+            context.getMongoDatabase().getCollection(getIndex(projectId, QMLevel)).updateMany(
+                Filters.in(DOCUMENT + "._id", hardIDs),
+                new Document("$set", new Document(DOCUMENT + "." + getParentArray(QMLevel), parents)));
+        } catch (MongoException e) {
+            System.err.println("ERROR updating '" + getIndex(projectId, QMLevel) + "': " + e.getMessage());
+        }
+    }
+
+    private static String getParentArray(QMLevel QMLevel) {
+        if (QMLevel == Constants.QMLevel.metrics) return ARRAY_FACTORS;
+        if (QMLevel == Constants.QMLevel.factors) return ARRAY_STRATEGIC_INDICATORS;
+        return null;
+    }
+
+}
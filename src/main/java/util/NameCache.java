@@ -0,0 +1,138 @@
+package util;
+
+import org.bson.Document;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static util.Constants.*;
+
+/**
+* Keeps the IDs and names of the entities of each project and QMLevel, loaded with a query that only reads the
+* name of the latest evaluation of each entity (see Queries.getNames). The names are reloaded when they are older
+* than the configured TTL, or after the writers of Queries modify the project.
+* It can be used from several threads and the returned maps are unmodifiable. The loads are not serialized, so
+* concurrent misses may query the same names, but names loaded before an invalidation are never cached after it.
+*/
+public class NameCache {
+
+    public static final long DEFAULT_TTL_MILLIS = 60 * 1000;
+
+    private static class Key {
+        private final String projectId;
+        private final QMLevel QMLevel;
+
+        private Key(String projectId, QMLevel QMLevel) {
+            this.projectId = projectId;
+            this.QMLevel = QMLevel;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            Key key = (Key) o;
+            return Objects.equals(projectId, key.projectId) && QMLevel == key.QMLevel;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(projectId, QMLevel);
+        }
+    }
+
+    private static class Entry {
+        private final Map<String, String> names;
+        private final long loadedAt;
+
+        private Entry(Map<String, String> names, long loadedAt) {
+            this.names = names;
+            this.loadedAt = loadedAt;
+        }
+    }
+
+    private final long ttlMillis;
+    private final Map<Key, Entry> entries = new ConcurrentHashMap<>();
+    // Incremented on every invalidation, so that names loaded before it are not kept
+    private final AtomicLong generation = new AtomicLong();
+
+    /**
+    * Create a cache of names.
+    *
+    * @param ttlMillis Time (in milliseconds) after which the names are reloaded from the database.
+    */
+    public NameCache(long ttlMillis) {
+        if (ttlMillis < 0) throw new IllegalArgumentException("Invalid cache configuration");
+        this.ttlMillis = ttlMillis;
+    }
+
+    public NameCache() {
+        this(DEFAULT_TTL_MILLIS);
+    }
+
+    /**
+    * Get the IDs and names of the entities of a project in a certain QMLevel.
+    *
+    * @param projectId The ID of the project.
+    * @param QMLevel The QMLevel (metrics, factors or strategic_indicators).
+    *
+    * @return An unmodifiable Map of ID,name of the existing entities, sorted by ID.
+    */
+    public Map<String, String> getNames(String projectId, QMLevel QMLevel) {
+        Key key = new Key(projectId, QMLevel);
+        Entry entry = entries.get(key);
+        long now = System.currentTimeMillis();
+        if (entry != null && now - entry.loadedAt <= ttlMillis) return entry.names;
+
+        long loadedGeneration = generation.get();
+        Map<String, String> names = new LinkedHashMap<>();
+        for (Document document : Queries.getNames(QMLevel, projectId))
+            names.put(Queries.getStringFromObject(document.get("_id")), Queries.getStringFromObject(document.get(NAME)));
+        entry = new Entry(Collections.unmodifiableMap(names), now);
+        // Concurrent callers may load the same names; the last one replaces the others. The check and the put
+        // hold the lock of the invalidations, so names loaded before an invalidation are never stored after it
+        synchronized (entries) {
+            if (loadedGeneration == generation.get()) entries.put(key, entry);
+        }
+        return entry.names;
+    }
+
+    /**
+    * Discard the names of a project, which will be reloaded in the next access.
+    *
+    * @param projectId The ID of the project.
+    */
+    public void invalidate(String projectId) {
+        synchronized (entries) {
+            generation.incrementAndGet();
+            entries.keySet().removeIf(key -> Objects.equals(key.projectId, projectId));
+        }
+    }
+
+    /**
+    * Discard the names of a QMLevel in every project.
+    *
+    * @param QMLevel The QMLevel (metrics, factors or strategic_indicators).
+    */
+    public void invalidate(QMLevel QMLevel) {
+        synchronized (entries) {
+            generation.incrementAndGet();
+            entries.keySet().removeIf(key -> key.QMLevel == QMLevel);
+        }
+    }
+
+    /**
+    * Discard every name.
+    */
+    public void invalidateAll() {
+        synchronized (entries) {
+            generation.incrementAndGet();
+            entries.clear();
+        }
+    }
+
+}
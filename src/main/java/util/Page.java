@@ -0,0 +1,105 @@
+package util;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+* Page of the results of a paged read (e.g. Queries.getRangedPage), together with the token used to read the
+* next page. The token is opaque to the callers: it encodes the key (entity ID and evaluationDate) of the last
+* result of the page, so the next page is read with an indexed range instead of skipping the previous results.
+*
+* @param <T> The class of the results.
+*/
+public class Page<T> {
+
+    private static final String SEPARATOR = "\n";
+
+    private final List<T> items;
+    private final String nextToken;
+
+    Page(List<T> items, String nextToken) {
+        this.items = items;
+        this.nextToken = nextToken;
+    }
+
+    /**
+    * Build a page from the results of a read, which has a next page when the read returned a full page.
+    *
+    * @param items The results.
+    * @param size The number of keys read (evaluations, entities or relations).
+    * @param pageSize The maximum number of keys of a page.
+    * @param lastID The entity (or relation) ID of the last key read.
+    * @param lastDate The evaluationDate of the last key read, or null if the read is keyed by ID only.
+    *
+    * @return The page.
+    */
+    static <T> Page<T> of(List<T> items, int size, int pageSize, String lastID, String lastDate) {
+        return new Page<>(items, size < pageSize || lastID == null ? null : encodeToken(lastID, lastDate));
+    }
+
+    public List<T> getItems() {
+        return items;
+    }
+
+    /**
+    * Get the token to read the next page.
+    *
+    * @return The token, or null if this is the last page.
+    */
+    public String getNextToken() {
+        return nextToken;
+    }
+
+    public boolean hasNext() {
+        return nextToken != null;
+    }
+
+    /**
+    * Read all the pages of a paged read.
+    *
+    * @param read The paged read, which receives the token of the page to be read (null for the first one).
+    *
+    * @return The results of all the pages.
+    */
+    public static <T> List<T> readAll(Function<String, Page<T>> read) {
+        List<T> ret = new ArrayList<>();
+        String token = null;
+        do {
+            Page<T> page = read.apply(token);
+            ret.addAll(page.getItems());
+            token = page.getNextToken();
+        } while (token != null);
+        return ret;
+    }
+
+    static String encodeToken(String id, String date) {
+        String key = date == null ? id : id + SEPARATOR + date;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(key.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+    * Decode a page token.
+    *
+    * @param token The token returned by a previous page, or null for the first page.
+    *
+    * @return The ID and the evaluationDate (null if the token has none), or null for the first page.
+    *
+    * @throws IllegalArgumentException If the token is not valid.
+    */
+    static String[] decodeToken(String token) {
+        if (token == null) return null;
+        String key;
+        try {
+            key = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid page token: " + token);
+        }
+        int separator = key.lastIndexOf(SEPARATOR);
+        if (separator < 0) return new String[] { key, null };
+        return new String[] { key.substring(0, separator), key.substring(separator + 1) };
+    }
+
+}
@@ -1,20 +1,28 @@
 package util;
 
 import DTOs.*;
+import com.mongodb.MongoBulkWriteException;
 import com.mongodb.MongoException;
+import com.mongodb.bulk.BulkWriteError;
 import com.mongodb.bulk.BulkWriteResult;
 import com.mongodb.bulk.BulkWriteUpsert;
 import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoCursor;
 import com.mongodb.client.MongoDatabase;
 import com.mongodb.client.model.*;
 import com.mongodb.client.result.UpdateResult;
+import org.bson.BsonValue;
 import org.bson.Document;
 import org.bson.conversions.Bson;
 
 import java.io.IOException;
 import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -127,30 +135,57 @@ public class Queries {
     * @return A Document list containing the latest evaluations, one evaluation for each entity.
     */
     public static List<Document> getLatest(QMLevel QMLevel, String projectId, String parent) {
-        MongoDatabase database = Connection.getMongoDatabase();
-        collectionExists(getIndex(projectId, QMLevel));
-        MongoCollection<Document> collection = database.getCollection( getIndex(projectId, QMLevel) );
-        Bson parentQuery = getLatestParentQueryBuilder(parent, QMLevel);
-
-        List<Bson> pipeline = Arrays.asList(
-                Aggregates.match(parentQuery),
-                Aggregates.sort(Sorts.descending(EVALUATION_DATE)),
-                Aggregates.group("$" + getIDtoGroup(QMLevel), Accumulators.push("documents", "$$ROOT")),
-                Aggregates.limit(10000),
-                Aggregates.project(
-                    Projections.fields(
-                        Projections.computed( "documents",
-                        new Document( "$slice", Arrays.asList("$documents", 1) ) )
-                    )
-                ),
-                Aggregates.sort(Sorts.ascending("documents." + getIDtoGroup(QMLevel)))
-        );
-
-        List<Document> result = collection.aggregate(pipeline).into( new ArrayList<>() );
+        List<Document> result = getLatest(QMLevel, projectId, parent, Document.class);
         for (Document document : result) System.out.println(document);
         return result;
     }
 
+    /**
+    * Get the latest evaluations of the entities in a certain QMLevel, decoded into the given class.
+    *
+    * @param QMLevel The QMLevel (metrics, factors or strategic_indicators).
+    * @param projectId The ID of the project.
+    * @param parent The parent of the entities to retrieve (if any).
+    * @param resultClass The class of the results: Document, or one of the DTOs decoded by EvaluationCodecs.
+    *
+    * @return A list containing the latest evaluations, one evaluation for each entity.
+    */
+    public static <T> List<T> getLatest(QMLevel QMLevel, String projectId, String parent, Class<T> resultClass) {
+        return getLatest(QMLevel, projectId, parent, ReadProfile.full, resultClass);
+    }
+
+    /**
+    * Get the latest evaluations of the entities in a certain QMLevel, decoded into the given class.
+    * Only the fields of the given ReadProfile are sent by the server. With a parent, the entities are filtered
+    * before taking their latest evaluation: each one is returned with its latest evaluation associated with the
+    * parent, even if a newer one is not.
+    *
+    * @param QMLevel The QMLevel (metrics, factors or strategic_indicators).
+    * @param projectId The ID of the project.
+    * @param parent The parent of the entities to retrieve (if any).
+    * @param profile The fields of the evaluations to be retrieved.
+    * @param resultClass The class of the results: Document, or one of the DTOs decoded by EvaluationCodecs.
+    *
+    * @return A list containing the latest evaluations, one evaluation for each entity.
+    */
+    public static <T> List<T> getLatest(QMLevel QMLevel, String projectId, String parent, ReadProfile profile,
+                                        Class<T> resultClass) {
+        EvaluationCache cache = ClientContext.current().getEvaluationCache();
+        if (cache == null) return loadLatest(QMLevel, projectId, parent, profile, resultClass);
+        EvaluationCache.Key key = new EvaluationCache.Key(projectId, QMLevel, null, parent, getCacheVariant(profile, resultClass));
+        return new ArrayList<>(cache.get(key, () -> loadLatest(QMLevel, projectId, parent, profile, resultClass)));
+    }
+
+    private static <T> List<T> loadLatest(QMLevel QMLevel, String projectId, String parent, ReadProfile profile,
+                                          Class<T> resultClass) {
+        // The views hold the latest evaluation of each entity, not the latest one associated with the parent
+        if (parent.equals("all") && LatestCollections.isAvailable(ClientContext.current(), projectId, QMLevel))
+            return LatestCollections.getLatest(projectId, QMLevel, null, profile, resultClass);
+        MongoCollection<Document> collection = getCollection(projectId, QMLevel);
+        Bson parentQuery = getLatestParentQueryBuilder(parent, QMLevel);
+        return collection.aggregate(getLatestPipeline(parentQuery, QMLevel, profile), resultClass).into( new ArrayList<>() );
+    }
+
     /**
     * Get the latest evaluations of the entities in a certain QMLevel.
     *
@@ -173,28 +208,173 @@ public class Queries {
     * @return A Document list containing the latest evaluation of said entity.
     */
     public static List<Document> getLatestElement(String projectId, QMLevel QMLevel, String elementId) {
-        MongoDatabase database = Connection.getMongoDatabase();
-        collectionExists(getIndex(projectId, QMLevel));
-        MongoCollection<Document> collection = database.getCollection( getIndex(projectId, QMLevel) );
+        List<Document> result = getLatestElement(projectId, QMLevel, elementId, Document.class);
+        for (Document document : result) System.out.println(document);
+        return result;
+    }
+
+    /**
+    * Get the latest evaluation of a specific entity, decoded into the given class.
+    *
+    * @param QMLevel The QMLevel (metrics, factors or strategic_indicators).
+    * @param projectId The ID of the project.
+    * @param elementId The ID of the entity to get the evaluation from.
+    * @param resultClass The class of the results: Document, or one of the DTOs decoded by EvaluationCodecs.
+    *
+    * @return A list containing the latest evaluation of said entity.
+    */
+    public static <T> List<T> getLatestElement(String projectId, QMLevel QMLevel, String elementId, Class<T> resultClass) {
+        return getLatestElement(projectId, QMLevel, elementId, ReadProfile.full, resultClass);
+    }
+
+    /**
+    * Get the latest evaluation of a specific entity, decoded into the given class.
+    * Only the fields of the given ReadProfile are sent by the server.
+    *
+    * @param QMLevel The QMLevel (metrics, factors or strategic_indicators).
+    * @param projectId The ID of the project.
+    * @param elementId The ID of the entity to get the evaluation from.
+    * @param profile The fields of the evaluation to be retrieved.
+    * @param resultClass The class of the results: Document, or one of the DTOs decoded by EvaluationCodecs.
+    *
+    * @return A list containing the latest evaluation of said entity.
+    */
+    public static <T> List<T> getLatestElement(String projectId, QMLevel QMLevel, String elementId, ReadProfile profile,
+                                               Class<T> resultClass) {
+        EvaluationCache cache = ClientContext.current().getEvaluationCache();
+        if (cache == null) return loadLatestElement(projectId, QMLevel, elementId, profile, resultClass);
+        EvaluationCache.Key key = new EvaluationCache.Key(projectId, QMLevel, elementId, null, getCacheVariant(profile, resultClass));
+        return new ArrayList<>(cache.get(key, () -> loadLatestElement(projectId, QMLevel, elementId, profile, resultClass)));
+    }
+
+    private static <T> List<T> loadLatestElement(String projectId, QMLevel QMLevel, String elementId, ReadProfile profile,
+                                                 Class<T> resultClass) {
+        if (LatestCollections.isAvailable(ClientContext.current(), projectId, QMLevel))
+            return LatestCollections.getLatest(projectId, QMLevel, elementId, profile, resultClass);
+        MongoCollection<Document> collection = getCollection(projectId, QMLevel);
         String group = getIDtoGroup(QMLevel);
 
-        List<Bson> pipeline = Arrays.asList(
+        // Indexed seek on (element, evaluationDate desc): only the newest document is read
+        List<Bson> pipeline = new ArrayList<>(Arrays.asList(
                 Aggregates.match(Filters.eq(group, elementId)),
                 Aggregates.sort(Sorts.descending(EVALUATION_DATE)),
-                Aggregates.group("$" + group, Accumulators.push("documents", "$$ROOT")),
+                Aggregates.limit(1),
+                Aggregates.project(
+                    Projections.fields(
+                        Projections.computed( "_id", "$" + group ),
+                        Projections.computed( "documents", Collections.singletonList("$$ROOT") )
+                    )
+                )
+        ));
+        addProfileProjection(pipeline, 3, profile, QMLevel);
+
+        return collection.aggregate(pipeline, resultClass).into( new ArrayList<>() );
+    }
+
+    /**
+    * Get the ID and name of the latest evaluation of each entity in a certain QMLevel. Only these two fields
+    * are sent by the server.
+    *
+    * @param QMLevel The QMLevel (metrics, factors or strategic_indicators).
+    * @param projectId The ID of the project.
+    *
+    * @return A Document list with the {_id, name} of each entity, sorted by ID.
+    */
+    public static List<Document> getNames(QMLevel QMLevel, String projectId) {
+        MongoCollection<Document> collection = getCollection(projectId, QMLevel);
+        String group = getIDtoGroup(QMLevel);
+
+        // Sorted on the (entity, evaluationDate desc) index; the group only reads the entity and its name
+        List<Bson> pipeline = Arrays.asList(
+                Aggregates.sort(Sorts.orderBy(Sorts.ascending(group), Sorts.descending(EVALUATION_DATE))),
+                Aggregates.group("$" + group, Accumulators.first(NAME, "$" + NAME)),
+                Aggregates.sort(Sorts.ascending("_id"))
+        );
+        return collection.aggregate(pipeline).allowDiskUse(true).into( new ArrayList<>() );
+    }
+
+    private static String getCacheVariant(ReadProfile profile, Class<?> resultClass) {
+        return profile + ":" + resultClass.getName();
+    }
+
+    /**
+    * Discard the cached reads and names of a project after writing to it (see EvaluationCache and NameCache).
+    *
+    * @param projectId The ID of the project.
+    */
+    static void invalidateCache(String projectId) {
+        ClientContext context = ClientContext.current();
+        EvaluationCache cache = context.getEvaluationCache();
+        if (cache != null) cache.invalidate(projectId);
+        context.getNameCache().invalidate(projectId);
+    }
+
+    /**
+    * Build the aggregation pipeline that returns the latest evaluation of each entity.
+    * Documents are sorted by (entity, evaluationDate desc) so that the server can walk the compound
+    * index created by IndexManager and keep only the first document of each group, instead of
+    * pushing the whole history of every entity into memory and slicing it afterwards.
+    *
+    * @param match The filter applied to the evaluations before grouping them.
+    * @param QMLevel The QMLevel (metrics, factors or strategic_indicators).
+    * @param profile The fields of the evaluations to be retrieved.
+    *
+    * @return The pipeline, which produces one {_id, documents: [latest]} bucket per entity.
+    */
+    private static List<Bson> getLatestPipeline(Bson match, QMLevel QMLevel, ReadProfile profile) {
+        String group = getIDtoGroup(QMLevel);
+        List<Bson> pipeline = new ArrayList<>(Arrays.asList(
+                Aggregates.match(match),
+                Aggregates.sort(Sorts.orderBy(Sorts.ascending(group), Sorts.descending(EVALUATION_DATE))),
+                Aggregates.group("$" + group, Accumulators.first("document", "$$ROOT")),
                 Aggregates.limit(10000),
                 Aggregates.project(
-                        Projections.fields(
-                                Projections.computed( "documents",
-                                        new Document( "$slice", Arrays.asList("$documents", 1) ) )
-                        )
+                    Projections.fields(
+                        Projections.computed( "documents", Collections.singletonList("$document") )
+                    )
                 ),
-                Aggregates.sort(Sorts.ascending("documents." + group))
-        );
+                Aggregates.sort(Sorts.ascending("_id"))
+        ));
+        addProfileProjection(pipeline, 2, profile, QMLevel);
+        return pipeline;
+    }
 
-        List<Document> result = collection.aggregate(pipeline).into( new ArrayList<>() );
-        for (Document document : result) System.out.println(document);
-        return result;
+    /**
+    * Get the projection which keeps only the fields of the evaluations needed by a ReadProfile.
+    *
+    * @param profile The fields of the evaluations to be retrieved.
+    * @param QMLevel The QMLevel (metrics, factors or strategic_indicators).
+    *
+    * @return The projection, or null if all the fields have to be retrieved.
+    */
+    static Bson getProfileProjection(ReadProfile profile, QMLevel QMLevel) {
+        String group = getIDtoGroup(QMLevel);
+        switch (profile) {
+            case values:
+                return Projections.include(group, PROJECT, EVALUATION_DATE, VALUE);
+            case header:
+                if (QMLevel == Constants.QMLevel.metrics)
+                    return Projections.include(group, NAME, DESCRIPTION, PROJECT, ARRAY_FACTORS);
+                if (QMLevel == Constants.QMLevel.factors)
+                    return Projections.include(group, NAME, DESCRIPTION, PROJECT, ARRAY_STRATEGIC_INDICATORS);
+                return Projections.include(group, NAME, DESCRIPTION, PROJECT);
+            default:
+                return null;
+        }
+    }
+
+    /**
+    * Insert in a pipeline the $project stage which keeps only the fields needed by a ReadProfile (if any).
+    *
+    * @param pipeline The pipeline.
+    * @param position The position of the stage in the pipeline, which has to be after the stages using the
+    *                 fields not included in the profile.
+    * @param profile The fields of the evaluations to be retrieved.
+    * @param QMLevel The QMLevel (metrics, factors or strategic_indicators).
+    */
+    private static void addProfileProjection(List<Bson> pipeline, int position, ReadProfile profile, QMLevel QMLevel) {
+        Bson projection = getProfileProjection(profile, QMLevel);
+        if (projection != null) pipeline.add(position, Aggregates.project(projection));
     }
 
     /**
@@ -205,7 +385,7 @@ public class Queries {
     *
     * @return The name of the collection.
     */
-    private static String getIndex(String projectId, QMLevel QMLevel) {
+    static String getIndex(String projectId, QMLevel QMLevel) {
         String index = "";
         switch (QMLevel) {
             case strategic_indicators:
@@ -224,6 +404,22 @@ public class Queries {
         return index;
     }
 
+    /**
+    * Get the collection of a project and QMLevel, checking that it exists. The collection decodes its results
+    * with the codecs of EvaluationCodecs, besides the default ones.
+    *
+    * @param projectId The ID of the project.
+    * @param QMLevel The QMLevel (metrics, factors, strategic_indicators or relations).
+    *
+    * @return The collection.
+    */
+    private static MongoCollection<Document> getCollection(String projectId, QMLevel QMLevel) {
+        MongoDatabase database = ClientContext.current().getMongoDatabase();
+        String indexName = getIndex(projectId, QMLevel);
+        collectionExists(indexName);
+        return database.getCollection(indexName).withCodecRegistry(EvaluationCodecs.getCodecRegistry());
+    }
+
     /**
     * Get the name of the attribute which stores the ID of each entity in a collection.
     *
@@ -231,7 +427,7 @@ public class Queries {
     *
     * @return The name of the attribute (metric, factor or strategic_indicator).
     */
-    private static String getIDtoGroup(QMLevel QMLevel) {
+    static String getIDtoGroup(QMLevel QMLevel) {
         String group = "";
         switch (QMLevel) {
             case strategic_indicators:
@@ -279,14 +475,9 @@ public class Queries {
     * @return The query which filters the evaluations using this condition.
     */
     private static Bson getRangedParentQueryBuilder(String parent, QMLevel QMLevel, LocalDate dateFrom, LocalDate dateTo) {
-        String from = FormattedDates.formatDate(dateFrom);
-        String to = FormattedDates.formatDate(dateTo);
         List<Bson> andFilters = new ArrayList<>();
 
-        Bson dateRangeFilter = Filters.and (
-            Filters.gte(EVALUATION_DATE, from),
-            Filters.lte(EVALUATION_DATE, to)
-        );
+        Bson dateRangeFilter = FormattedDates.dateRange(dateFrom, dateTo);
 
         if (parent.equals("all")) andFilters.add(dateRangeFilter);
         else {
@@ -317,11 +508,69 @@ public class Queries {
     * @return The Document list containing the filtered evaluations.
     */
     public static List<Document> getRanged(QMLevel QMLevel, String projectId , String parent, LocalDate dateFrom, LocalDate dateTo) {
-        MongoDatabase database = Connection.getMongoDatabase();
-        collectionExists(getIndex(projectId, QMLevel));
-        MongoCollection<Document> collection = database.getCollection( getIndex(projectId, QMLevel) );
+        List<Document> result = getRanged(QMLevel, projectId, parent, dateFrom, dateTo, Document.class);
+        for (Document document : result) System.out.println(document);
+        return result;
+    }
 
-        List<Bson> pipeline = Arrays.asList(
+    /**
+    * Get the evaluations that belong to a specified time range, for a certain QMLevel, decoded into the given class.
+    *
+    * @param QMLevel The QMLevel (metrics, factors or strategic_indicators).
+    * @param projectId The ID of the project.
+    * @param parent The ID of the parent the entity has to be associated with.
+    * @param dateFrom The starting date of the filtering time range.
+    * @param dateTo The ending date of the filtering time range.
+    * @param resultClass The class of the results: Document, or one of the DTOs decoded by EvaluationCodecs.
+    *
+    * @return The list containing the filtered evaluations.
+    */
+    public static <T> List<T> getRanged(QMLevel QMLevel, String projectId , String parent, LocalDate dateFrom,
+                                        LocalDate dateTo, Class<T> resultClass) {
+        return getRanged(QMLevel, projectId, parent, dateFrom, dateTo, ReadProfile.full, resultClass);
+    }
+
+    /**
+    * Get the evaluations that belong to a specified time range, for a certain QMLevel, decoded into the given class.
+    * Only the fields of the given ReadProfile are sent by the server.
+    *
+    * @param QMLevel The QMLevel (metrics, factors or strategic_indicators).
+    * @param projectId The ID of the project.
+    * @param parent The ID of the parent the entity has to be associated with.
+    * @param dateFrom The starting date of the filtering time range.
+    * @param dateTo The ending date of the filtering time range.
+    * @param profile The fields of the evaluations to be retrieved.
+    * @param resultClass The class of the results: Document, or one of the DTOs decoded by EvaluationCodecs.
+    *
+    * @return The list containing the filtered evaluations.
+    */
+    public static <T> List<T> getRanged(QMLevel QMLevel, String projectId , String parent, LocalDate dateFrom,
+                                        LocalDate dateTo, ReadProfile profile, Class<T> resultClass) {
+        return getRanged(QMLevel, projectId, parent, dateFrom, dateTo, profile, null, resultClass);
+    }
+
+    /**
+    * Get the evaluations that belong to a specified time range, for a certain QMLevel, decoded into the given class.
+    * Only the fields of the given ReadProfile are sent by the server, and only one evaluation per time bucket
+    * when a Downsampling is given.
+    *
+    * @param QMLevel The QMLevel (metrics, factors or strategic_indicators).
+    * @param projectId The ID of the project.
+    * @param parent The ID of the parent the entity has to be associated with.
+    * @param dateFrom The starting date of the filtering time range.
+    * @param dateTo The ending date of the filtering time range.
+    * @param profile The fields of the evaluations to be retrieved.
+    * @param downsampling The time buckets of the evaluations, or null to retrieve every evaluation.
+    * @param resultClass The class of the results: Document, or one of the DTOs decoded by EvaluationCodecs.
+    *
+    * @return The list containing the filtered evaluations.
+    */
+    public static <T> List<T> getRanged(QMLevel QMLevel, String projectId , String parent, LocalDate dateFrom,
+                                        LocalDate dateTo, ReadProfile profile, Downsampling downsampling,
+                                        Class<T> resultClass) {
+        MongoCollection<Document> collection = getCollection(projectId, QMLevel);
+
+        List<Bson> pipeline = new ArrayList<>(Arrays.asList(
                 Aggregates.match(getRangedParentQueryBuilder(parent, QMLevel, dateFrom, dateTo)),
                 Aggregates.sort(Sorts.ascending(EVALUATION_DATE)),
                 Aggregates.group("$" + getIDtoGroup(QMLevel), Accumulators.push("documents", "$$ROOT")),
@@ -333,63 +582,422 @@ public class Queries {
                     )
                 ),
                 Aggregates.sort(Sorts.ascending("documents." + getIDtoGroup(QMLevel)))
-        );
+        ));
+        addProfileProjection(pipeline, 2, profile, QMLevel);
+        if (downsampling != null) pipeline.addAll(1, downsampling.getStages(QMLevel));
+
+        return collection.aggregate(pipeline, resultClass).allowDiskUse(downsampling != null).into( new ArrayList<>() );
+    }
+
+    /**
+    * Get the evaluations that belong to a specified time range, for a certain QMLevel.
+    *
+    * @param QMLevel The QMLevel (metrics, factors or strategic_indicators).
+    * @param projectId The ID of the project.
+    * @param dateFrom The starting date of the filtering time range.
+    * @param dateTo The ending date of the filtering time range.
+    *
+    * @return The Document list containing the filtered evaluations.
+    */
+    public static List<Document> getRanged(QMLevel QMLevel, String projectId, LocalDate dateFrom, LocalDate dateTo) {
+        return getRanged(QMLevel, projectId,"all", dateFrom, dateTo);
+    }
+
+    /**
+    * Get the evaluations that belong to a specified time range, for a specific entity.
+    *
+    * @param QMLevel The QMLevel (metrics, factors or strategic_indicators).
+    * @param projectId The ID of the project.
+    * @param elementId The ID of the entity we want to retrieve the evaluations from.
+    * @param from The starting date of the filtering time range.
+    * @param to The ending date of the filtering time range.
+    *
+    * @return The Document list containing the filtered evaluations.
+    */
+    public static List<Document> getRangedElement(String projectId, QMLevel QMLevel, String elementId, LocalDate from, LocalDate to) {
+        List<Document> result = getRangedElement(projectId, QMLevel, elementId, from, to, Document.class);
+        for (Document document : result) System.out.println(document);
+        return result;
+    }
+
+    /**
+    * Get the evaluations that belong to a specified time range, for a specific entity, decoded into the given class.
+    *
+    * @param QMLevel The QMLevel (metrics, factors or strategic_indicators).
+    * @param projectId The ID of the project.
+    * @param elementId The ID of the entity we want to retrieve the evaluations from.
+    * @param from The starting date of the filtering time range.
+    * @param to The ending date of the filtering time range.
+    * @param resultClass The class of the results: Document, or one of the DTOs decoded by EvaluationCodecs.
+    *
+    * @return The list containing the filtered evaluations.
+    */
+    public static <T> List<T> getRangedElement(String projectId, QMLevel QMLevel, String elementId, LocalDate from,
+                                               LocalDate to, Class<T> resultClass) {
+        return getRangedElement(projectId, QMLevel, elementId, from, to, ReadProfile.full, resultClass);
+    }
+
+    /**
+    * Get the evaluations that belong to a specified time range, for a specific entity, decoded into the given class.
+    * Only the fields of the given ReadProfile are sent by the server.
+    *
+    * @param QMLevel The QMLevel (metrics, factors or strategic_indicators).
+    * @param projectId The ID of the project.
+    * @param elementId The ID of the entity we want to retrieve the evaluations from.
+    * @param from The starting date of the filtering time range.
+    * @param to The ending date of the filtering time range.
+    * @param profile The fields of the evaluations to be retrieved.
+    * @param resultClass The class of the results: Document, or one of the DTOs decoded by EvaluationCodecs.
+    *
+    * @return The list containing the filtered evaluations.
+    */
+    public static <T> List<T> getRangedElement(String projectId, QMLevel QMLevel, String elementId, LocalDate from,
+                                               LocalDate to, ReadProfile profile, Class<T> resultClass) {
+        return getRangedElement(projectId, QMLevel, elementId, from, to, profile, null, resultClass);
+    }
+
+    /**
+    * Get the evaluations of a specific entity that belong to a specified time range, decoded into the given class.
+    * Only the fields of the given ReadProfile are sent by the server, and only one evaluation per time bucket
+    * when a Downsampling is given.
+    *
+    * @param projectId The ID of the project.
+    * @param QMLevel The QMLevel (metrics, factors or strategic_indicators).
+    * @param elementId The ID of the entity we want to retrieve the evaluations from.
+    * @param from The starting date of the filtering time range.
+    * @param to The ending date of the filtering time range.
+    * @param profile The fields of the evaluations to be retrieved.
+    * @param downsampling The time buckets of the evaluations, or null to retrieve every evaluation.
+    * @param resultClass The class of the results: Document, or one of the DTOs decoded by EvaluationCodecs.
+    *
+    * @return The list containing the filtered evaluations.
+    */
+    public static <T> List<T> getRangedElement(String projectId, QMLevel QMLevel, String elementId, LocalDate from,
+                                               LocalDate to, ReadProfile profile, Downsampling downsampling,
+                                               Class<T> resultClass) {
+        MongoCollection<Document> collection = getCollection(projectId, QMLevel);
+        List<Bson> pipeline = getRangedElementPipeline(QMLevel, elementId, from, to, profile, downsampling);
+        return collection.aggregate(pipeline, resultClass).into( new ArrayList<>() );
+    }
+
+    /**
+    * Build the pipeline of getRangedElement. The downsampling stages run before the date sort, so that the
+    * evaluations are pushed in date order, and the profile projection right after it, before the grouping.
+    */
+    static List<Bson> getRangedElementPipeline(QMLevel QMLevel, String elementId, LocalDate from, LocalDate to,
+                                               ReadProfile profile, Downsampling downsampling) {
+        String group = getIDtoGroup(QMLevel);
+        Bson dateSort = Aggregates.sort(Sorts.descending(EVALUATION_DATE));
+
+        List<Bson> pipeline = new ArrayList<>(Arrays.asList(
+                Aggregates.match(Filters.eq(group, elementId)),
+                Aggregates.match(FormattedDates.dateRange(from, to)),
+                dateSort,
+                Aggregates.group("$" + group, Accumulators.push("documents", "$$ROOT")),
+                Aggregates.limit(10000),
+                Aggregates.project(
+                    Projections.fields(
+                        Projections.computed( "documents",
+                            new Document( "$slice", Arrays.asList("$documents", 10000) ) )
+                    )
+                ),
+                Aggregates.sort(Sorts.ascending("documents." + group))
+        ));
+        addProfileProjection(pipeline, pipeline.indexOf(dateSort) + 1, profile, QMLevel);
+        if (downsampling != null) pipeline.addAll(pipeline.indexOf(dateSort), downsampling.getStages(QMLevel));
+        return pipeline;
+    }
+
+    /**
+    * Get a page of the latest evaluations of the entities in a certain QMLevel, sorted by entity ID.
+    * Unlike getLatest, the number of entities is not limited: the following pages are read with the token of
+    * the previous one until it returns no token.
+    *
+    * @param QMLevel The QMLevel (metrics, factors or strategic_indicators).
+    * @param projectId The ID of the project.
+    * @param parent The parent of the entities to retrieve (if any).
+    * @param profile The fields of the evaluations to be retrieved.
+    * @param pageSize The maximum number of entities of the page.
+    * @param pageToken The token returned by the previous page, or null to read the first page.
+    * @param resultClass The class of the results: Document, or one of the DTOs decoded by EvaluationCodecs.
+    *
+    * @return The page, containing the latest evaluation of each entity.
+    */
+    public static <T> Page<T> getLatestPage(QMLevel QMLevel, String projectId, String parent, ReadProfile profile,
+                                            int pageSize, String pageToken, Class<T> resultClass) {
+        checkPageSize(pageSize);
+        MongoCollection<Document> collection = getCollection(projectId, QMLevel);
+        String group = getIDtoGroup(QMLevel);
+        String[] key = Page.decodeToken(pageToken);
+
+        Bson match = getLatestParentQueryBuilder(parent, QMLevel);
+        if (key != null) match = Filters.and(match, Filters.gt(group, key[0]));
+
+        List<Bson> pipeline = new ArrayList<>(Arrays.asList(
+                Aggregates.match(match),
+                Aggregates.sort(Sorts.orderBy(Sorts.ascending(group), Sorts.descending(EVALUATION_DATE))),
+                Aggregates.group("$" + group, Accumulators.first("document", "$$ROOT")),
+                Aggregates.sort(Sorts.ascending("_id")),
+                Aggregates.limit(pageSize),
+                Aggregates.project(
+                    Projections.fields(
+                        Projections.computed( "documents", Collections.singletonList("$document") )
+                    )
+                )
+        ));
+        addProfileProjection(pipeline, 2, profile, QMLevel);
+
+        List<T> items = collection.aggregate(pipeline, resultClass).allowDiskUse(true).into( new ArrayList<>() );
+        return getPage(items, pageSize, false);
+    }
+
+    /**
+    * Get a page of the evaluations that belong to a specified time range, for a certain QMLevel, sorted by
+    * entity ID and evaluationDate. Unlike getRanged, the number of entities and evaluations is not limited: the
+    * following pages are read with the token of the previous one until it returns no token.
+    * The evaluations of an entity may be split between consecutive pages.
+    *
+    * @param QMLevel The QMLevel (metrics, factors or strategic_indicators).
+    * @param projectId The ID of the project.
+    * @param parent The ID of the parent the entity has to be associated with.
+    * @param dateFrom The starting date of the filtering time range.
+    * @param dateTo The ending date of the filtering time range.
+    * @param profile The fields of the evaluations to be retrieved (full or values).
+    * @param pageSize The maximum number of evaluations of the page.
+    * @param pageToken The token returned by the previous page, or null to read the first page.
+    * @param resultClass The class of the results: Document, or one of the DTOs decoded by EvaluationCodecs.
+    *
+    * @return The page, containing the evaluations of each entity.
+    */
+    public static <T> Page<T> getRangedPage(QMLevel QMLevel, String projectId, String parent, LocalDate dateFrom,
+                                            LocalDate dateTo, ReadProfile profile, int pageSize, String pageToken,
+                                            Class<T> resultClass) {
+        checkPageSize(pageSize);
+        if (profile == ReadProfile.header)
+            throw new IllegalArgumentException("The evaluations of the ranged pages must include their evaluationDate");
+        MongoCollection<Document> collection = getCollection(projectId, QMLevel);
+        String group = getIDtoGroup(QMLevel);
+        String[] key = Page.decodeToken(pageToken);
+
+        Bson match = getRangedParentQueryBuilder(parent, QMLevel, dateFrom, dateTo);
+        if (key != null) {
+            match = Filters.and(match, Filters.or(
+                Filters.gt(group, key[0]),
+                Filters.and(Filters.eq(group, key[0]), Filters.gt(EVALUATION_DATE, getKeyDate(key, pageToken)))
+            ));
+        }
+
+        // Indexed walk on (entity, evaluationDate) from the key of the previous page
+        List<Bson> pipeline = new ArrayList<>(Arrays.asList(
+                Aggregates.match(match),
+                Aggregates.sort(Sorts.orderBy(Sorts.ascending(group), Sorts.ascending(EVALUATION_DATE))),
+                Aggregates.limit(pageSize),
+                Aggregates.group("$" + group, Accumulators.push("documents", "$$ROOT")),
+                Aggregates.sort(Sorts.ascending("_id"))
+        ));
+        addProfileProjection(pipeline, 3, profile, QMLevel);
+
+        List<T> items = collection.aggregate(pipeline, resultClass).into( new ArrayList<>() );
+        return getPage(items, pageSize, true);
+    }
+
+    private static void checkPageSize(int pageSize) {
+        if (pageSize <= 0) throw new IllegalArgumentException("The page size must be positive");
+    }
+
+    /**
+    * Get the evaluationDate of the key of a page token, as the value stored in the evaluationDate fields.
+    */
+    private static Object getKeyDate(String[] key, String pageToken) {
+        if (key[1] == null) throw new IllegalArgumentException("Invalid page token: " + pageToken);
+        try {
+            return FormattedDates.toStoredDate(LocalDate.parse(key[1]));
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Invalid page token: " + pageToken);
+        }
+    }
+
+    /**
+    * Build a page from the buckets of a paged read.
+    *
+    * @param items The buckets (Document, or one of the DTOs decoded by EvaluationCodecs), sorted by entity.
+    * @param pageSize The maximum number of keys of the page.
+    * @param ranged Whether the page is keyed by (entity, evaluationDate) instead of by entity.
+    *
+    * @return The page.
+    */
+    private static <T> Page<T> getPage(List<T> items, int pageSize, boolean ranged) {
+        int size = 0;
+        String lastID = null;
+        String lastDate = null;
+        for (T item : items) {
+            if (item instanceof Document) {
+                Document bucket = (Document) item;
+                List<?> documents = (List<?>) bucket.get("documents");
+                lastID = getStringFromObject(bucket.get("_id"));
+                size += documents.size();
+                if (!documents.isEmpty())
+                    lastDate = FormattedDates.formatStoredDate(((Document) documents.get(documents.size() - 1)).get(EVALUATION_DATE));
+            }
+            else if (item instanceof ElemenEvaluationtDTO) {
+                ElemenEvaluationtDTO element = (ElemenEvaluationtDTO) item;
+                List<EvaluationDTO> evaluations = element.getEvaluations();
+                lastID = element.getID();
+                size += evaluations.size();
+                if (!evaluations.isEmpty() && evaluations.get(evaluations.size() - 1).getEvaluationDate() != null)
+                    lastDate = evaluations.get(evaluations.size() - 1).getEvaluationDate().toString();
+            }
+            else throw new IllegalArgumentException("Unsupported result class: " + item.getClass().getName());
+        }
+        if (!ranged) return Page.of(items, items.size(), pageSize, lastID, null);
+        return Page.of(items, size, pageSize, lastDate == null ? null : lastID, lastDate);
+    }
+
+    /**
+    * Get the latest evaluations of the entities in a certain QMLevel, for every parent they are associated with,
+    * in a single aggregation. The parents array of each evaluation is unwound, so an entity appears once for each
+    * of its parents, with the latest of its evaluations associated with that parent (the same evaluation
+    * getLatest returns when filtering by that parent).
+    *
+    * @param QMLevel The QMLevel (metrics or factors).
+    * @param projectId The ID of the project.
+    * @param parents The IDs of the parents to retrieve, or null to retrieve all of them.
+    *
+    * @return A Document list with one {_id: {parent, element}, documents: [latest]} bucket for each
+    *         parent and entity, sorted by parent and entity.
+    */
+    public static List<Document> getLatestByParent(QMLevel QMLevel, String projectId, Collection<String> parents) {
+        String group = getIDtoGroup(QMLevel);
+        List<Bson> pipeline = new ArrayList<>();
+        pipeline.add(Aggregates.match(getParentsQueryBuilder(parents, QMLevel)));
+        pipeline.add(Aggregates.sort(Sorts.orderBy(Sorts.ascending(group), Sorts.descending(EVALUATION_DATE))));
+        pipeline.addAll(getUnwindParentsStages(parents, QMLevel));
+        pipeline.add(Aggregates.group(getParentGroupId(group), Accumulators.first("document", "$$ROOT")));
+        pipeline.add(Aggregates.project(Projections.computed("documents", Collections.singletonList("$document"))));
+        pipeline.add(Aggregates.project(Projections.exclude("documents." + UNWOUND_PARENT)));
+        pipeline.add(Aggregates.sort(Sorts.ascending("_id.parent", "_id.element")));
+
+        return getCollection(projectId, QMLevel).aggregate(pipeline).into( new ArrayList<>() );
+    }
+
+    /**
+    * Get the evaluations that belong to a specified time range, for a certain QMLevel, grouped by parent and entity
+    * in a single aggregation. An entity appears once for each of its parents, with the evaluations associated
+    * with that parent (the same evaluations getRanged returns when filtering by that parent).
+    *
+    * @param QMLevel The QMLevel (metrics or factors).
+    * @param projectId The ID of the project.
+    * @param parents The IDs of the parents to retrieve, or null to retrieve all of them.
+    * @param dateFrom The starting date of the filtering time range.
+    * @param dateTo The ending date of the filtering time range.
+    *
+    * @return A Document list with one {_id: {parent, element}, documents: [evaluations]} bucket for each
+    *         parent and entity, sorted by parent and entity.
+    */
+    public static List<Document> getRangedByParent(QMLevel QMLevel, String projectId, Collection<String> parents,
+                                                   LocalDate dateFrom, LocalDate dateTo) {
+        String group = getIDtoGroup(QMLevel);
+        List<Bson> pipeline = new ArrayList<>();
+        pipeline.add(Aggregates.match(Filters.and(
+            getParentsQueryBuilder(parents, QMLevel),
+            getRangedParentQueryBuilder("all", QMLevel, dateFrom, dateTo)
+        )));
+        pipeline.add(Aggregates.sort(Sorts.ascending(EVALUATION_DATE)));
+        pipeline.addAll(getUnwindParentsStages(parents, QMLevel));
+        pipeline.add(Aggregates.group(getParentGroupId(group), Accumulators.push("documents", "$$ROOT")));
+        pipeline.add(Aggregates.project(Projections.exclude("documents." + UNWOUND_PARENT)));
+        pipeline.add(Aggregates.sort(Sorts.ascending("_id.parent", "_id.element")));
+
+        return getCollection(projectId, QMLevel).aggregate(pipeline).allowDiskUse(true).into( new ArrayList<>() );
+    }
+
+    /**
+    * Construct a query to filter the entities' evaluations which belong to any of the given parents.
+    *
+    * @param parents The IDs of the parents, or null to accept any evaluation associated with a parent.
+    * @param QMLevel The QMLevel (metrics or factors).
+    *
+    * @return The query which filters the evaluations using this condition.
+    */
+    private static Bson getParentsQueryBuilder(Collection<String> parents, QMLevel QMLevel) {
+        String parentsArray = QMLevel == Constants.QMLevel.metrics ? ARRAY_FACTORS : ARRAY_STRATEGIC_INDICATORS;
+        if (parents == null) return Filters.exists(parentsArray + ".0");
+        else return Filters.in(parentsArray, parents);
+    }
+
+    /**
+    * Stages that copy the parents array of each evaluation into an auxiliary field and unwind it, keeping
+    * the original array untouched, so that each evaluation appears once for each of its (requested) parents.
+    */
+    private static List<Bson> getUnwindParentsStages(Collection<String> parents, QMLevel QMLevel) {
+        String parentsArray = QMLevel == Constants.QMLevel.metrics ? ARRAY_FACTORS : ARRAY_STRATEGIC_INDICATORS;
+        List<Bson> stages = new ArrayList<>();
+        stages.add(Aggregates.addFields(new Field<>(UNWOUND_PARENT, "$" + parentsArray)));
+        stages.add(Aggregates.unwind("$" + UNWOUND_PARENT));
+        if (parents != null) stages.add(Aggregates.match(Filters.in(UNWOUND_PARENT, parents)));
+        return stages;
+    }
 
-        List<Document> result = collection.aggregate(pipeline).into( new ArrayList<>() );
-        for (Document document : result) System.out.println(document);
-        return result;
+    private static Document getParentGroupId(String group) {
+        return new Document("parent", "$" + UNWOUND_PARENT).append("element", "$" + group);
     }
 
     /**
-    * Get the evaluations that belong to a specified time range, for a certain QMLevel.
+    * Get a cursor over the evaluations that belong to a specified time range, for a certain QMLevel.
+    * Unlike getRanged, the evaluations are not grouped nor limited by the server: they are returned one by one,
+    * sorted by entity (descending, so that the (entity, evaluationDate desc) index is walked backwards instead
+    * of sorting in memory) and by evaluation date (ascending), and fetched in batches of the given size.
     *
     * @param QMLevel The QMLevel (metrics, factors or strategic_indicators).
     * @param projectId The ID of the project.
+    * @param parent The ID of the parent the entity has to be associated with.
     * @param dateFrom The starting date of the filtering time range.
     * @param dateTo The ending date of the filtering time range.
+    * @param batchSize The number of evaluations fetched in each round-trip.
     *
-    * @return The Document list containing the filtered evaluations.
+    * @return The cursor, which has to be closed when it is not fully consumed.
     */
-    public static List<Document> getRanged(QMLevel QMLevel, String projectId, LocalDate dateFrom, LocalDate dateTo) {
-        return getRanged(QMLevel, projectId,"all", dateFrom, dateTo);
+    public static MongoCursor<Document> getRangedCursor(QMLevel QMLevel, String projectId, String parent,
+                                                        LocalDate dateFrom, LocalDate dateTo, int batchSize) {
+        MongoDatabase database = ClientContext.current().getMongoDatabase();
+        collectionExists(getIndex(projectId, QMLevel));
+        MongoCollection<Document> collection = database.getCollection( getIndex(projectId, QMLevel) );
+        String group = getIDtoGroup(QMLevel);
+
+        return collection.find(getRangedParentQueryBuilder(parent, QMLevel, dateFrom, dateTo))
+                .sort(Sorts.orderBy(Sorts.descending(group), Sorts.ascending(EVALUATION_DATE)))
+                .batchSize(batchSize)
+                .iterator();
     }
 
     /**
-    * Get the evaluations that belong to a specified time range, for a specific entity.
+    * Get a cursor over the evaluations that belong to a specified time range, for a specific entity.
+    * The evaluations are sorted by evaluation date (descending, as in getRangedElement) and fetched in
+    * batches of the given size.
     *
     * @param QMLevel The QMLevel (metrics, factors or strategic_indicators).
     * @param projectId The ID of the project.
     * @param elementId The ID of the entity we want to retrieve the evaluations from.
     * @param from The starting date of the filtering time range.
     * @param to The ending date of the filtering time range.
+    * @param batchSize The number of evaluations fetched in each round-trip.
     *
-    * @return The Document list containing the filtered evaluations.
+    * @return The cursor, which has to be closed when it is not fully consumed.
     */
-    public static List<Document> getRangedElement(String projectId, QMLevel QMLevel, String elementId, LocalDate from, LocalDate to) {
-        MongoDatabase database = Connection.getMongoDatabase();
+    public static MongoCursor<Document> getRangedElementCursor(String projectId, QMLevel QMLevel, String elementId,
+                                                               LocalDate from, LocalDate to, int batchSize) {
+        MongoDatabase database = ClientContext.current().getMongoDatabase();
         collectionExists(getIndex(projectId, QMLevel));
         MongoCollection<Document> collection = database.getCollection( getIndex(projectId, QMLevel) );
-        String group = getIDtoGroup(QMLevel);
 
-        List<Bson> pipeline = Arrays.asList(
-                Aggregates.match(Filters.eq(group, elementId)),
-                Aggregates.match(Filters.gte(EVALUATION_DATE, from.toString())),
-                Aggregates.match(Filters.lte(EVALUATION_DATE, to.toString())),
-                Aggregates.sort(Sorts.descending(EVALUATION_DATE)),
-                Aggregates.group("$" + group, Accumulators.push("documents", "$$ROOT")),
-                Aggregates.limit(10000),
-                Aggregates.project(
-                    Projections.fields(
-                        Projections.computed( "documents",
-                            new Document( "$slice", Arrays.asList("$documents", 10000) ) )
-                    )
-                ),
-                Aggregates.sort(Sorts.ascending("documents." + group))
+        Bson filter = Filters.and(
+            Filters.eq(getIDtoGroup(QMLevel), elementId),
+            FormattedDates.dateRange(from, to)
         );
-
-        List<Document> result = collection.aggregate(pipeline).into( new ArrayList<>() );
-        for (Document document : result) System.out.println(document);
-        return result;
+        return collection.find(filter)
+                .sort(Sorts.descending(EVALUATION_DATE))
+                .batchSize(batchSize)
+                .iterator();
     }
 
     /**
@@ -402,13 +1010,12 @@ public class Queries {
     * @return The Document list containing the filtered relations.
     */
     public static List<Document> getRelations(LocalDate dateFrom, LocalDate dateTo, String projectId) {
-        MongoDatabase database = Connection.getMongoDatabase();
+        MongoDatabase database = ClientContext.current().getMongoDatabase();
         collectionExists(getRelationsIndex(projectId));
         MongoCollection<Document> collection = database.getCollection( getRelationsIndex(projectId) );
 
         List<Bson> pipeline = Arrays.asList(
-                Aggregates.match(Filters.gte(EVALUATION_DATE, dateFrom.toString())),
-                Aggregates.match(Filters.lte(EVALUATION_DATE, dateTo.toString())),
+                Aggregates.match(FormattedDates.dateRange(dateFrom, dateTo)),
                 Aggregates.sort(Sorts.descending(EVALUATION_DATE)),
                 Aggregates.limit(1000)
         );
@@ -418,6 +1025,147 @@ public class Queries {
         return result;
     }
 
+    /**
+    * Get a page of the relations that belong to a specified time range, sorted by evaluationDate (newest first)
+    * and ID. Unlike getRelations, the number of relations is not limited: the following pages are read with the
+    * token of the previous one until it returns no token.
+    *
+    * @param dateFrom The starting date of the filtering time range.
+    * @param dateTo The ending date of the filtering time range.
+    * @param projectId The ID of the project.
+    * @param pageSize The maximum number of relations of the page.
+    * @param pageToken The token returned by the previous page, or null to read the first page.
+    *
+    * @return The page, containing the relations.
+    */
+    public static Page<Document> getRelationsPage(LocalDate dateFrom, LocalDate dateTo, String projectId,
+                                                  int pageSize, String pageToken) {
+        checkPageSize(pageSize);
+        MongoCollection<Document> collection = getCollection(projectId, QMLevel.relations);
+        String[] key = Page.decodeToken(pageToken);
+
+        Bson match = FormattedDates.dateRange(dateFrom, dateTo);
+        if (key != null) {
+            Object keyDate = getKeyDate(key, pageToken);
+            match = Filters.and(match, Filters.or(
+                Filters.lt(EVALUATION_DATE, keyDate),
+                Filters.and(Filters.eq(EVALUATION_DATE, keyDate), Filters.gt("_id", key[0]))
+            ));
+        }
+
+        List<Bson> pipeline = Arrays.asList(
+                Aggregates.match(match),
+                Aggregates.sort(Sorts.orderBy(Sorts.descending(EVALUATION_DATE), Sorts.ascending("_id"))),
+                Aggregates.limit(pageSize)
+        );
+
+        List<Document> result = collection.aggregate(pipeline).into( new ArrayList<>() );
+        if (result.isEmpty()) return Page.of(result, 0, pageSize, null, null);
+        Document last = result.get(result.size() - 1);
+        return Page.of(result, result.size(), pageSize, getStringFromObject(last.get("_id")),
+            FormattedDates.formatStoredDate(last.get(EVALUATION_DATE)));
+    }
+
+    /**
+    * Get the newest relation of each (source element, target element) pair that belongs to a specified time range,
+    * sorted by evaluationDate (newest first). Only the relations targeting factors or strategic indicators are
+    * returned. The pairs are resolved by the server from the sourceElement and targetElement fields, or from the
+    * sourceId and targetId of the relations written without them, so the whole range is read without a limit.
+    *
+    * @param dateFrom The starting date of the filtering time range.
+    * @param dateTo The ending date of the filtering time range.
+    * @param projectId The ID of the project.
+    *
+    * @return The Document list containing the relations, with their sourceElement and targetElement fields set.
+    */
+    public static List<Document> getDistinctRelations(LocalDate dateFrom, LocalDate dateTo, String projectId) {
+        MongoCollection<Document> collection = getCollection(projectId, QMLevel.relations);
+
+        List<Bson> pipeline = new ArrayList<>(Collections.singletonList(
+                Aggregates.match(Filters.and(
+                    FormattedDates.dateRange(dateFrom, dateTo),
+                    Filters.in(TARGETTPYE, FACTOR_TYPE, STRATEGIC_INDICATOR_TYPE)
+                ))
+        ));
+        pipeline.addAll(getDistinctRelationsStages());
+
+        return collection.aggregate(pipeline).allowDiskUse(true).into( new ArrayList<>() );
+    }
+
+    /**
+    * Build the stages that keep the newest relation of each (source element, target element) pair.
+    */
+    private static List<Bson> getDistinctRelationsStages() {
+        return Arrays.asList(
+                Aggregates.addFields(
+                    new Field<>(SOURCE_ELEMENT, new Document("$ifNull", Arrays.asList("$" + SOURCE_ELEMENT, getRelationElement(SOURCEID)))),
+                    new Field<>(TARGET_ELEMENT, new Document("$ifNull", Arrays.asList("$" + TARGET_ELEMENT, getRelationElement(TARGETID))))
+                ),
+                Aggregates.sort(Sorts.orderBy(Sorts.descending(EVALUATION_DATE), Sorts.ascending("_id"))),
+                Aggregates.group(new Document(SOURCE_ELEMENT, "$" + SOURCE_ELEMENT).append(TARGET_ELEMENT, "$" + TARGET_ELEMENT),
+                    Accumulators.first("document", "$$ROOT")),
+                Aggregates.replaceRoot("$document"),
+                Aggregates.sort(Sorts.orderBy(Sorts.descending(EVALUATION_DATE), Sorts.ascending("_id")))
+        );
+    }
+
+    /**
+    * Get the current relation graph of a project: the newest relation of each (source element, target element)
+    * pair in the days before the newest evaluationDate of the relations (see getDistinctRelations). The newest
+    * date is read with an indexed seek and the window with an indexed range, and the result is cached when the
+    * EvaluationCache of the context is enabled until the next relation write.
+    *
+    * @param projectId The ID of the project.
+    * @param days The number of days of the window before the newest evaluationDate (included).
+    *
+    * @return The Document list containing the relations, or an empty list if the project has no relations.
+    */
+    public static List<Document> getCurrentRelations(String projectId, int days) {
+        EvaluationCache cache = ClientContext.current().getEvaluationCache();
+        if (cache == null) return loadCurrentRelations(projectId, days);
+        EvaluationCache.Key key = new EvaluationCache.Key(projectId, QMLevel.relations, null, null, "current-" + days);
+        return new ArrayList<>(cache.get(key, () -> loadCurrentRelations(projectId, days)));
+    }
+
+    private static List<Document> loadCurrentRelations(String projectId, int days) {
+        MongoCollection<Document> collection = getCollection(projectId, QMLevel.relations);
+
+        // Indexed seek on evaluationDate desc: only the newest relation is read to resolve the window
+        Document newest = collection.find()
+                .projection(Projections.include(EVALUATION_DATE))
+                .sort(Sorts.descending(EVALUATION_DATE))
+                .limit(1)
+                .first();
+        if (newest == null || newest.get(EVALUATION_DATE) == null) return new ArrayList<>();
+
+        // Then an indexed range on the window, instead of a $lookup whose $expr range cannot use the index
+        LocalDate to = FormattedDates.parseStoredDate(newest.get(EVALUATION_DATE));
+        return getDistinctRelations(to.minusDays(days), to, projectId);
+    }
+
+    /**
+    * Build the expression that extracts the element ID from the sourceId or targetId of a relation written without
+    * the sourceElement and targetElement fields, which has the form project-element-yyyy-MM-dd.
+    *
+    * @param field The field (sourceId or targetId).
+    *
+    * @return The expression, which evaluates to "ERROR" if the field does not have that form.
+    */
+    private static Object getRelationElement(String field) {
+        Document value = new Document("$ifNull", Arrays.asList("$" + field, ""));
+        Document start = new Document("$add", Arrays.asList(
+            new Document("$strLenCP", new Document("$ifNull", Arrays.asList("$" + PROJECT, ""))), 1));
+        // The element lies between the project and the "-yyyy-MM-dd" suffix
+        Document length = new Document("$subtract", Arrays.asList(new Document("$strLenCP", "$$value"),
+            new Document("$add", Arrays.asList("$$start", 11))));
+        return new Document("$let", new Document("vars", new Document("value", value).append("start", start))
+            .append("in", new Document("$cond", Arrays.asList(
+                new Document("$gt", Arrays.asList(length, 0)),
+                new Document("$substrCP", Arrays.asList("$$value", "$$start", length)),
+                "ERROR"
+            ))));
+    }
+
     /**
     * Get the latest relations (the last evaluation of each existing relation).
     *
@@ -426,7 +1174,7 @@ public class Queries {
     * @return The Document list containing the latest relations.
     */
     public static List<Document> getLatestRelationsDate(String projectId) {
-        MongoDatabase database = Connection.getMongoDatabase();
+        MongoDatabase database = ClientContext.current().getMongoDatabase();
         collectionExists(getRelationsIndex(projectId));
         MongoCollection<Document> collection = database.getCollection( getRelationsIndex(projectId) );
 
@@ -459,55 +1207,19 @@ public class Queries {
                                                           List<String> missingFactors,
                                                           long datesMismatch) {
 
-        MongoDatabase database = Connection.getMongoDatabase();
+        MongoDatabase database = ClientContext.current().getMongoDatabase();
         collectionExists(getIndex(projectId, QMLevel));
         MongoCollection<Document> collection = database.getCollection( getIndex(projectId, QMLevel) );
-        Document updateDoc;
-
-        if (estimation != null) {
-            List<Document> estimationArray = new ArrayList<>();
-            for (QuadrupletDTO<Integer, String, Float, Float> e : estimation.getEstimation()) {
-                Document estimationDoc = new Document()
-                    .append(ESTIMATION_ID, e.getFirst())
-                    .append(ESTIMATION_LABEL, e.getSecond())
-                    .append(ESTIMATION_VALUE, e.getThird())
-                    .append(ESTIMATION_UPPER_THRESHOLD, e.getFourth());
-                estimationArray.add(estimationDoc);
-            }
-
-            updateDoc = new Document("$set", new Document()
-                .append("_id", hardID)
-                .append(PROJECT, projectId)
-                .append(STRATEGIC_INDICATOR_ID, strategicIndicatorID)
-                .append(EVALUATION_DATE, evaluationDate.toString())
-                .append(DATA_SOURCE, "QRapids Dashboard")
-                .append(NAME, strategicIndicatorName)
-                .append(DESCRIPTION, strategicIndicatorDescription)
-                .append(VALUE, value)
-                .append(RATIONALE, info)
-                .append(MISSING_FACTORS, missingFactors)
-                .append(DATES_MISMATCH, (int) datesMismatch)
-                .append(ESTIMATION, estimationArray));
-        }
-
-        else {
-            updateDoc = new Document("$set", new Document()
-                .append("_id", hardID)
-                .append(PROJECT, projectId)
-                .append(STRATEGIC_INDICATOR_ID, strategicIndicatorID)
-                .append(EVALUATION_DATE, evaluationDate.toString())
-                .append(DATA_SOURCE, "QRapids Dashboard")
-                .append(NAME, strategicIndicatorName)
-                .append(DESCRIPTION, strategicIndicatorDescription)
-                .append(VALUE, value)
-                .append(RATIONALE, info)
-                .append(MISSING_FACTORS, missingFactors)
-                .append(DATES_MISMATCH, (int) datesMismatch));
-        }
+        Document updateDoc = buildStrategicIndicatorUpdate(hardID, projectId, strategicIndicatorID,
+            strategicIndicatorName, strategicIndicatorDescription, evaluationDate, value, info, estimation,
+            missingFactors, datesMismatch);
 
         Document filter = new Document("_id", hardID);
         UpdateOptions updateOptions = new UpdateOptions().upsert(true);
-        return collection.updateOne(filter, updateDoc, updateOptions);
+        UpdateResult result = collection.updateOne(filter, updateDoc, updateOptions);
+        LatestCollections.upsert(projectId, QMLevel, Collections.singletonList(updateDoc));
+        invalidateCache(projectId);
+        return result;
     }
 
     /**
@@ -529,57 +1241,149 @@ public class Queries {
                                                long datesMismatch,
                                                List<String> indicators) {
 
-        MongoDatabase database = Connection.getMongoDatabase();
+        MongoDatabase database = ClientContext.current().getMongoDatabase();
         collectionExists(getIndex(projectId, QMLevel));
         MongoCollection<Document> collection = database.getCollection( getIndex(projectId, QMLevel) );
-        Document updateDoc;
-
-        if (estimation != null) {
-            List<Document> estimationArray = new ArrayList<>();
-            for (QuadrupletDTO<Integer, String, Float, Float> e : estimation.getEstimation()) {
-                Document estimationDoc = new Document()
-                    .append(ESTIMATION_ID, e.getFirst())
-                    .append(ESTIMATION_LABEL, e.getSecond())
-                    .append(ESTIMATION_VALUE, e.getThird())
-                    .append(ESTIMATION_UPPER_THRESHOLD, e.getFourth());
-                estimationArray.add(estimationDoc);
-            }
+        Document updateDoc = buildFactorUpdate(hardID, projectId, factorID, factorName, factorDescription,
+            evaluationDate, value, info, estimation, missingMetrics, datesMismatch, indicators);
 
-            updateDoc = new Document("$set", new Document()
-                .append("_id", hardID)
-                .append(PROJECT, projectId)
-                .append(FACTOR_ID, factorID)
-                .append(EVALUATION_DATE, evaluationDate.toString())
-                .append(DATA_SOURCE, "QRapids Dashboard")
-                .append(NAME, factorName)
-                .append(DESCRIPTION, factorDescription)
-                .append(VALUE, value)
-                .append(RATIONALE, info)
-                .append(MISSING_METRICS, missingMetrics)
-                .append(DATES_MISMATCH, (int) datesMismatch)
-                .append(ARRAY_STRATEGIC_INDICATORS, indicators)
-                .append(ESTIMATION, estimationArray));
-        }
+        Document filter = new Document("_id", hardID);
+        UpdateOptions updateOptions = new UpdateOptions().upsert(true);
+        UpdateResult result = collection.updateOne(filter, updateDoc, updateOptions);
+        LatestCollections.upsert(projectId, QMLevel, Collections.singletonList(updateDoc));
+        invalidateCache(projectId);
+        return result;
+    }
 
-        else {
-            updateDoc = new Document("$set", new Document()
-                .append("_id", hardID)
-                .append(PROJECT, projectId)
-                .append(FACTOR_ID, factorID)
-                .append(EVALUATION_DATE, evaluationDate.toString())
-                .append(DATA_SOURCE, "QRapids Dashboard")
-                .append(NAME, factorName)
-                .append(DESCRIPTION, factorDescription)
-                .append(VALUE, value)
-                .append(RATIONALE, info)
-                .append(MISSING_METRICS, missingMetrics)
-                .append(DATES_MISMATCH, (int) datesMismatch)
-                .append(ARRAY_STRATEGIC_INDICATORS, indicators));
+    /**
+    * Build the update to create or update a Strategic Indicator evaluation.
+    *
+    * @return The $set update as a Document.
+    */
+    public static Document buildStrategicIndicatorUpdate(String hardID,
+                                                         String projectId,
+                                                         String strategicIndicatorID,
+                                                         String strategicIndicatorName,
+                                                         String strategicIndicatorDescription,
+                                                         LocalDate evaluationDate,
+                                                         Float value,
+                                                         String info,
+                                                         EstimationEvaluationDTO estimation,
+                                                         List<String> missingFactors,
+                                                         long datesMismatch) {
+
+        Document setDoc = new Document()
+            .append("_id", hardID)
+            .append(PROJECT, projectId)
+            .append(STRATEGIC_INDICATOR_ID, strategicIndicatorID)
+            .append(EVALUATION_DATE, FormattedDates.toStoredDate(evaluationDate))
+            .append(DATA_SOURCE, "QRapids Dashboard")
+            .append(NAME, strategicIndicatorName)
+            .append(DESCRIPTION, strategicIndicatorDescription)
+            .append(VALUE, value)
+            .append(RATIONALE, info)
+            .append(MISSING_FACTORS, missingFactors)
+            .append(DATES_MISMATCH, (int) datesMismatch);
+        if (estimation != null) setDoc.append(ESTIMATION, buildEstimationArray(estimation));
+        return new Document("$set", setDoc);
+    }
+
+    /**
+    * Build the update to create or update a Factor evaluation.
+    *
+    * @return The $set update as a Document.
+    */
+    public static Document buildFactorUpdate(String hardID,
+                                             String projectId,
+                                             String factorID,
+                                             String factorName,
+                                             String factorDescription,
+                                             LocalDate evaluationDate,
+                                             Float value,
+                                             String info,
+                                             EstimationEvaluationDTO estimation,
+                                             List<String> missingMetrics,
+                                             long datesMismatch,
+                                             List<String> indicators) {
+
+        Document setDoc = new Document()
+            .append("_id", hardID)
+            .append(PROJECT, projectId)
+            .append(FACTOR_ID, factorID)
+            .append(EVALUATION_DATE, FormattedDates.toStoredDate(evaluationDate))
+            .append(DATA_SOURCE, "QRapids Dashboard")
+            .append(NAME, factorName)
+            .append(DESCRIPTION, factorDescription)
+            .append(VALUE, value)
+            .append(RATIONALE, info)
+            .append(MISSING_METRICS, missingMetrics)
+            .append(DATES_MISMATCH, (int) datesMismatch)
+            .append(ARRAY_STRATEGIC_INDICATORS, indicators);
+        if (estimation != null) setDoc.append(ESTIMATION, buildEstimationArray(estimation));
+        return new Document("$set", setDoc);
+    }
+
+    private static List<Document> buildEstimationArray(EstimationEvaluationDTO estimation) {
+        List<Document> estimationArray = new ArrayList<>();
+        for (QuadrupletDTO<Integer, String, Float, Float> e : estimation.getEstimation()) {
+            Document estimationDoc = new Document()
+                .append(ESTIMATION_ID, e.getFirst())
+                .append(ESTIMATION_LABEL, e.getSecond())
+                .append(ESTIMATION_VALUE, e.getThird())
+                .append(ESTIMATION_UPPER_THRESHOLD, e.getFourth());
+            estimationArray.add(estimationDoc);
         }
+        return estimationArray;
+    }
 
-        Document filter = new Document("_id", hardID);
+    /**
+    * Create or update a set of evaluations of a QMLevel, identified by their hard IDs, with unordered bulk writes
+    * of at most batchSize upserts each. An error in one evaluation does not prevent the others from being written.
+    *
+    * @param QMLevel The QMLevel of the evaluations.
+    * @param projectId The ID of the project.
+    * @param hardIDs The hard IDs of the evaluations.
+    * @param updates The update of each evaluation (see buildFactorUpdate and buildStrategicIndicatorUpdate).
+    * @param batchSize The maximum number of upserts sent in each bulk write.
+    *
+    * @return The result of every evaluation, in the same order as the provided ones.
+    */
+    public static BatchWriteResult setValues(QMLevel QMLevel, String projectId, List<String> hardIDs,
+                                             List<Document> updates, int batchSize) {
+        if (hardIDs.size() != updates.size())
+            throw new IllegalArgumentException("Each update must have its hard ID");
+        if (batchSize <= 0) throw new IllegalArgumentException("The batch size must be positive");
+
+        MongoDatabase database = ClientContext.current().getMongoDatabase();
+        collectionExists(getIndex(projectId, QMLevel));
+        MongoCollection<Document> collection = database.getCollection( getIndex(projectId, QMLevel) );
+        BulkWriteOptions bulkWriteOptions = new BulkWriteOptions().ordered(false);
         UpdateOptions updateOptions = new UpdateOptions().upsert(true);
-        return collection.updateOne(filter, updateDoc, updateOptions);
+        BatchWriteResult result = new BatchWriteResult(hardIDs);
+
+        for (int from = 0; from < hardIDs.size(); from += batchSize) {
+            int to = Math.min(from + batchSize, hardIDs.size());
+            List<WriteModel<Document>> writes = new ArrayList<>();
+            for (int i = from; i < to; i++)
+                writes.add(new UpdateOneModel<>(new Document("_id", hardIDs.get(i)), updates.get(i), updateOptions));
+
+            try {
+                result.setBatchResult(from, to, collection.bulkWrite(writes, bulkWriteOptions));
+            } catch (MongoBulkWriteException e) {
+                for (BulkWriteError error : e.getWriteErrors())
+                    result.setFailed(from + error.getIndex(), error.getMessage());
+                result.setBatchResult(from, to, e.getWriteResult());
+            } catch (MongoException e) {
+                for (int i = from; i < to; i++) result.setFailed(i, e.getMessage());
+            }
+        }
+
+        List<Document> written = new ArrayList<>();
+        for (int i = 0; i < hardIDs.size(); i++)
+            if (result.getStatus(i) != BatchWriteResult.Status.failed) written.add(updates.get(i));
+        LatestCollections.upsert(projectId, QMLevel, written);
+        invalidateCache(projectId);
+        return result;
     }
 
     /**
@@ -589,25 +1393,27 @@ public class Queries {
     * @param factor The FactorEvaluationDTO that contains the Strategic Indicators associated to that factor.
     */
     public static UpdateResult setFactorStrategicIndicatorRelation(FactorEvaluationDTO factor) {
-        MongoDatabase database = Connection.getMongoDatabase();
-        String indexName = getIndex( factor.getProject(), QMLevel.factors );
-        collectionExists(indexName);
-        MongoCollection<Document> collection = database.getCollection(indexName);
+        if (factor.getEvaluations().isEmpty()) return null;
+        return setFactorsStrategicIndicatorRelation(Collections.singletonList(factor), DEFAULT_WRITE_BATCH_SIZE);
+    }
 
-        UpdateResult response = null;
-        int index = 0;
-
-        if (!factor.getEvaluations().isEmpty()) {
-            for (EvaluationDTO ignored : factor.getEvaluations()) {
-                String factorID = factor.getFactorEntryID(index++);
-                Document updateDoc = new Document("$set", new Document()
-                    .append(ARRAY_STRATEGIC_INDICATORS, factor.getStrategicIndicators()));
-                Document filter = new Document("_id", factorID);
-                UpdateOptions updateOptions = new UpdateOptions().upsert(true);
-                response = collection.updateOne(filter, updateDoc, updateOptions);
-            }
+    /**
+    * Function that updates the factors' index with the information of the strategic indicators of every
+    * evaluation of a list of factors. The evaluations with the same strategic indicators are updated together.
+    *
+    * @param factors The FactorEvaluationDTOs that contain the Strategic Indicators associated to each factor.
+    * @param batchSize The maximum number of evaluations updated by each request.
+    *
+    * @return The aggregated result of all the updates (the upserted ID is the one of the last created entry).
+    */
+    public static UpdateResult setFactorsStrategicIndicatorRelation(List<FactorEvaluationDTO> factors, int batchSize) {
+        Map<String, Map<String, List<String>>> values = new LinkedHashMap<>();
+        for (FactorEvaluationDTO factor : factors) {
+            Map<String, List<String>> projectValues = values.computeIfAbsent(factor.getProject(), k -> new LinkedHashMap<>());
+            for (int index = 0; index < factor.getEvaluations().size(); index++)
+                projectValues.put(factor.getFactorEntryID(index), factor.getStrategicIndicators());
         }
-        return response;
+        return setArrayValues(QMLevel.factors, ARRAY_STRATEGIC_INDICATORS, values, batchSize);
     }
 
     /**
@@ -617,26 +1423,85 @@ public class Queries {
     * @param metric The MetricEvaluationDTO that contains the Factors associated to that metric.
     */
     public static UpdateResult setMetricQualityFactorRelation(MetricEvaluationDTO metric) {
-        String indexName = getIndex(metric.getProject(), QMLevel.metrics);
-        MongoDatabase database = Connection.getMongoDatabase();
-        collectionExists(indexName);
-        MongoCollection<Document> collection = database.getCollection(indexName);
-
-        UpdateResult response = null;
-        int index = 0;
+        if (metric.getEvaluations().isEmpty()) return null;
+        return setMetricsQualityFactorsRelation(Collections.singletonList(metric), DEFAULT_WRITE_BATCH_SIZE);
+    }
 
-        if (!metric.getEvaluations().isEmpty()) {
-            for (EvaluationDTO ignored : metric.getEvaluations()) {
-                String metricID = metric.getMetricEntryID(index++);
-                Document updateDoc = new Document("$set", new Document()
-                    .append(ARRAY_FACTORS, metric.getFactors()));
+    /**
+    * Function that updates the metrics' index with the information of the quality factors of every
+    * evaluation of a list of metrics. The evaluations with the same factors are updated together.
+    *
+    * @param metrics The MetricEvaluationDTOs that contain the Factors associated to each metric.
+    * @param batchSize The maximum number of evaluations updated by each request.
+    *
+    * @return The aggregated result of all the updates (the upserted ID is the one of the last created entry).
+    */
+    public static UpdateResult setMetricsQualityFactorsRelation(List<MetricEvaluationDTO> metrics, int batchSize) {
+        Map<String, Map<String, List<String>>> values = new LinkedHashMap<>();
+        for (MetricEvaluationDTO metric : metrics) {
+            Map<String, List<String>> projectValues = values.computeIfAbsent(metric.getProject(), k -> new LinkedHashMap<>());
+            for (int index = 0; index < metric.getEvaluations().size(); index++)
+                projectValues.put(metric.getMetricEntryID(index), metric.getFactors());
+        }
+        return setArrayValues(QMLevel.metrics, ARRAY_FACTORS, values, batchSize);
+    }
 
-                Document filter = new Document("_id", metricID);
-                UpdateOptions updateOptions = new UpdateOptions().upsert(true);
-                response = collection.updateOne(filter, updateDoc, updateOptions);
+    /**
+    * Set the parents array of a set of entries. The entries that get the same array are updated with a single
+    * updateMany filtered by their IDs (in chunks of batchSize). When some of them do not exist, the chunk is
+    * written again as unordered upserts, so that they are created as the single updates did.
+    *
+    * @param QMLevel The QMLevel of the entries (metrics or factors).
+    * @param arrayField The parents array (factors or indicators).
+    * @param values For each project, the array to set in each entry, identified by its ID. If an entry
+    *               appears more than once, only its last array is kept.
+    * @param batchSize The maximum number of entries updated by each request.
+    *
+    * @return The aggregated result of all the updates.
+    */
+    private static UpdateResult setArrayValues(QMLevel QMLevel, String arrayField,
+                                               Map<String, Map<String, List<String>>> values, int batchSize) {
+        if (batchSize <= 0) throw new IllegalArgumentException("The batch size must be positive");
+        MongoDatabase database = ClientContext.current().getMongoDatabase();
+        BulkWriteOptions bulkWriteOptions = new BulkWriteOptions().ordered(false);
+        UpdateOptions updateOptions = new UpdateOptions().upsert(true);
+        long matched = 0, modified = 0;
+        BsonValue upsertedId = null;
+
+        for (Map.Entry<String, Map<String, List<String>>> project : values.entrySet()) {
+            String indexName = getIndex(project.getKey(), QMLevel);
+            collectionExists(indexName);
+            MongoCollection<Document> collection = database.getCollection(indexName);
+
+            Map<List<String>, List<String>> groups = new LinkedHashMap<>();
+            for (Map.Entry<String, List<String>> entry : project.getValue().entrySet())
+                groups.computeIfAbsent(entry.getValue(), k -> new ArrayList<>()).add(entry.getKey());
+
+            for (Map.Entry<List<String>, List<String>> group : groups.entrySet()) {
+                Document updateDoc = new Document("$set", new Document(arrayField, group.getKey()));
+                List<String> ids = group.getValue();
+
+                for (int from = 0; from < ids.size(); from += batchSize) {
+                    List<String> chunk = ids.subList(from, Math.min(from + batchSize, ids.size()));
+                    UpdateResult result = collection.updateMany(Filters.in("_id", chunk), updateDoc);
+                    modified += result.getModifiedCount();
+                    if (result.getMatchedCount() == chunk.size()) matched += result.getMatchedCount();
+                    else {
+                        List<WriteModel<Document>> writes = new ArrayList<>();
+                        for (String id : chunk)
+                            writes.add(new UpdateOneModel<>(new Document("_id", id), updateDoc, updateOptions));
+                        BulkWriteResult bulkWriteResult = collection.bulkWrite(writes, bulkWriteOptions);
+                        matched += bulkWriteResult.getMatchedCount();
+                        modified += bulkWriteResult.getModifiedCount();
+                        List<BulkWriteUpsert> upserts = bulkWriteResult.getUpserts();
+                        if (!upserts.isEmpty()) upsertedId = upserts.get(upserts.size() - 1).getId();
+                    }
+                    LatestCollections.setParents(project.getKey(), QMLevel, chunk, group.getKey());
+                }
             }
+            invalidateCache(project.getKey());
         }
-        return response;
+        return UpdateResult.acknowledged(matched, modified, upsertedId);
     }
 
     /**
@@ -650,29 +1515,15 @@ public class Queries {
                                                    String targetValue) {
 
         BulkWriteOptions bulkWriteOptions = new BulkWriteOptions().ordered(false);
-        List<WriteModel<Document>> writes = new ArrayList<>();
         String indexName = getRelationsIndex(projectID);
-        MongoDatabase database = Connection.getMongoDatabase();
+        MongoDatabase database = ClientContext.current().getMongoDatabase();
         collectionExists(indexName);
         MongoCollection<Document> collection = database.getCollection(indexName);
-
-        for (int i = 0; i < factorID.length; i++) {
-            String sourceID = String.join("-", projectID, factorID[i], evaluationDate.toString());
-            String targetID = String.join("-", projectID, strategicIndicatorID, evaluationDate.toString());
-            String relation = String.join("-", projectID, factorID[i]) + "->" +
-                String.join("-", strategicIndicatorID, evaluationDate.toString());
-
-            Document updateDoc = buildBulkWriteRequest(projectID, evaluationDate.toString(), relation, false, sourceID, targetID,
-                safeGetFromDoubleArray(sourceValue, i), safeGetFromStringArray(sourceCategories, i),
-                safeGetFromDoubleArray(weight, i), targetValue);
-
-            Document filter = new Document("_id", relation);
-            UpdateOptions updateOptions = new UpdateOptions().upsert(true);
-            UpdateOneModel<Document> updateOneModel = new UpdateOneModel<>(filter, updateDoc, updateOptions);
-            writes.add(updateOneModel);
-        }
+        List<WriteModel<Document>> writes = getRelationWrites(projectID, factorID, weight, sourceValue,
+            sourceCategories, strategicIndicatorID, evaluationDate, targetValue, false);
 
         BulkWriteResult bulkWriteResult = collection.bulkWrite(writes, bulkWriteOptions);
+        invalidateCache(projectID);
         for (BulkWriteUpsert upsert : bulkWriteResult.getUpserts())
             System.out.println("Upserted document ID: " + upsert.getId());
         int insertedDocs = bulkWriteResult.getMatchedCount() + bulkWriteResult.getUpserts().size();
@@ -691,29 +1542,15 @@ public class Queries {
                                                    String targetValue) {
 
         BulkWriteOptions bulkWriteOptions = new BulkWriteOptions().ordered(false);
-        List<WriteModel<Document>> writes = new ArrayList<>();
         String indexName = getRelationsIndex(projectID);
-        MongoDatabase database = Connection.getMongoDatabase();
+        MongoDatabase database = ClientContext.current().getMongoDatabase();
         collectionExists(indexName);
         MongoCollection<Document> collection = database.getCollection(indexName);
-
-        for (int i = 0; i < metricID.length; i++) {
-            String sourceID = String.join("-", projectID, metricID[i], evaluationDate.toString());
-            String targetID = String.join("-", projectID, qualityFactorID, evaluationDate.toString());
-            String relation = String.join("-", projectID, metricID[i]) + "->" +
-                String.join("-", qualityFactorID, evaluationDate.toString());
-
-            Document updateDoc = buildBulkWriteRequest(projectID, evaluationDate.toString(), relation, true, sourceID, targetID,
-                safeGetFromDoubleArray(sourceValue, i), safeGetFromStringArray(sourceCategories, i),
-                safeGetFromDoubleArray(weight, i), targetValue);
-
-            Document filter = new Document("_id", relation);
-            UpdateOptions updateOptions = new UpdateOptions().upsert(true);
-            UpdateOneModel<Document> updateOneModel = new UpdateOneModel<>(filter, updateDoc, updateOptions);
-            writes.add(updateOneModel);
-        }
+        List<WriteModel<Document>> writes = getRelationWrites(projectID, metricID, weight, sourceValue,
+            sourceCategories, qualityFactorID, evaluationDate, targetValue, true);
 
         BulkWriteResult bulkWriteResult = collection.bulkWrite(writes, bulkWriteOptions);
+        invalidateCache(projectID);
         for (BulkWriteUpsert upsert : bulkWriteResult.getUpserts())
             System.out.println("Upserted document ID: " + upsert.getId());
         int insertedDocs = bulkWriteResult.getMatchedCount() + bulkWriteResult.getUpserts().size();
@@ -721,6 +1558,37 @@ public class Queries {
                metricID.length == insertedDocs;
     }
 
+    /**
+    * Build the upserts of the relations between a set of source elements (metrics or factors) and
+    * a target element (factor or strategic indicator) in a given date.
+    *
+    * @param metrics True if the sources are metrics and the target a factor, false if the sources are
+    *                factors and the target a strategic indicator.
+    *
+    * @return The list of upserts, one for each source element.
+    */
+    static List<WriteModel<Document>> getRelationWrites(String projectID, String[] sourceElementID, double[] weight,
+                                                        double[] sourceValue, String[] sourceCategories,
+                                                        String targetElementID, LocalDate evaluationDate,
+                                                        String targetValue, boolean metrics) {
+        List<WriteModel<Document>> writes = new ArrayList<>();
+        for (int i = 0; i < sourceElementID.length; i++) {
+            String sourceID = String.join("-", projectID, sourceElementID[i], evaluationDate.toString());
+            String targetID = String.join("-", projectID, targetElementID, evaluationDate.toString());
+            String relation = String.join("-", projectID, sourceElementID[i]) + "->" +
+                String.join("-", targetElementID, evaluationDate.toString());
+
+            Document updateDoc = buildBulkWriteRequest(projectID, evaluationDate.toString(), relation, metrics, sourceID, targetID,
+                safeGetFromDoubleArray(sourceValue, i), safeGetFromStringArray(sourceCategories, i),
+                safeGetFromDoubleArray(weight, i), targetValue, sourceElementID[i], targetElementID);
+
+            Document filter = new Document("_id", relation);
+            UpdateOptions updateOptions = new UpdateOptions().upsert(true);
+            writes.add(new UpdateOneModel<>(filter, updateDoc, updateOptions));
+        }
+        return writes;
+    }
+
     /**
     * Build a BulkWriteRequest to create or update documents in the Relations collection.
     *
@@ -736,6 +1604,31 @@ public class Queries {
                                                  String sourceCategory,
                                                  double weight,
                                                  String targetValue) {
+        return buildBulkWriteRequest(projectID, evaluationDate, relation, metrics, sourceID, targetID, value,
+            sourceCategory, weight, targetValue, null, null);
+    }
+
+    /**
+    * Build a BulkWriteRequest to create or update documents in the Relations collection, storing the IDs of the
+    * source and target elements in their own fields (see getDistinctRelations).
+    *
+    * @param sourceElementID The ID of the source element, or null to not store it.
+    * @param targetElementID The ID of the target element, or null to not store it.
+    *
+    * @return The created BulkWriteRequest as a Document.
+    */
+    public static Document buildBulkWriteRequest(String projectID,
+                                                 String evaluationDate,
+                                                 String relation,
+                                                 Boolean metrics,
+                                                 String sourceID,
+                                                 String targetID,
+                                                 double value,
+                                                 String sourceCategory,
+                                                 double weight,
+                                                 String targetValue,
+                                                 String sourceElementID,
+                                                 String targetElementID) {
 
         String sourceType, targetType;
         if (metrics) {
@@ -747,8 +1640,8 @@ public class Queries {
             targetType = STRATEGIC_INDICATOR_TYPE;
         }
 
-        return new Document("$set", new Document()
-            .append(EVALUATION_DATE, evaluationDate)
+        Document set = new Document()
+            .append(EVALUATION_DATE, FormattedDates.toStoredDate(evaluationDate))
             .append(PROJECT, projectID)
             .append(RELATION, relation)
             .append(SOURCEID, sourceID)
@@ -758,7 +1651,10 @@ public class Queries {
             .append(VALUE, value)
             .append(WEIGHT, weight)
             .append(TARGETVALUE, targetValue)
-            .append(SOURCELABEL, sourceCategory));
+            .append(SOURCELABEL, sourceCategory);
+        if (sourceElementID != null) set.append(SOURCE_ELEMENT, sourceElementID);
+        if (targetElementID != null) set.append(TARGET_ELEMENT, targetElementID);
+        return new Document("$set", set);
     }
 
     /**
@@ -767,16 +1663,11 @@ public class Queries {
     * @return A list containing the collections' names.
     */
     public static List<String> getCollections() {
-        MongoDatabase database = Connection.getMongoDatabase();
-        List<String> collectionNames = new ArrayList<>();
-        for (String name : database.listCollectionNames()) collectionNames.add(name);
-        return collectionNames;
+        return ClientContext.current().getCollectionRegistry().getCollections();
     }
 
-    private static void collectionExists(String collectionName) throws MongoException {
-        MongoDatabase database = Connection.getMongoDatabase();
-        List<String> collections = database.listCollectionNames().into(new ArrayList<>());
-        if (!collections.contains(collectionName))
+    static void collectionExists(String collectionName) throws MongoException {
+        if (!ClientContext.current().getCollectionRegistry().exists(collectionName))
             throw new MongoException("Collection '" + collectionName + "' does not exist");
     }
 
@@ -789,14 +1680,14 @@ public class Queries {
     * @return A list of Documents which contains the filtered relations.
     */
 	public static List<Document> getFactorMetricsRelations(String projectId, String evaluationDate) {
-        MongoDatabase database = Connection.getMongoDatabase();
+        MongoDatabase database = ClientContext.current().getMongoDatabase();
         String indexName = INDEX_RELATIONS + "." + projectId;
         collectionExists(indexName);
         MongoCollection<Document> collection = database.getCollection(indexName);
 
         List<Bson> pipeline = Arrays.asList(
                 Aggregates.match(Filters.eq(PROJECT, projectId)),
-                Aggregates.match(Filters.eq(EVALUATION_DATE, evaluationDate)),
+                Aggregates.match(FormattedDates.dateEquals(evaluationDate)),
                 Aggregates.match(Filters.eq(TARGETTPYE, "factors")),
                 Aggregates.limit(1000)
         );
@@ -806,6 +1697,63 @@ public class Queries {
         return result;
 	}
 
+    /**
+    * Get a page of the relations between metrics and factors of an evaluation date, sorted by ID. Unlike
+    * getFactorMetricsRelations, the number of relations is not limited: the following pages are read with the
+    * token of the previous one until it returns no token.
+    *
+    * @param projectId The ID of the project.
+    * @param evaluationDate The evaluation date of the relations.
+    * @param pageSize The maximum number of relations of the page.
+    * @param pageToken The token returned by the previous page, or null to read the first page.
+    *
+    * @return The page, containing the relations.
+    */
+    public static Page<Document> getFactorMetricsRelationsPage(String projectId, String evaluationDate, int pageSize,
+                                                               String pageToken) {
+        return getTargetRelationsPage(projectId, evaluationDate, FACTOR_TYPE, pageSize, pageToken);
+    }
+
+    /**
+    * Get a page of the relations between factors and strategic indicators of an evaluation date, sorted by ID.
+    * The following pages are read with the token of the previous one until it returns no token.
+    *
+    * @param projectId The ID of the project.
+    * @param evaluationDate The evaluation date of the relations.
+    * @param pageSize The maximum number of relations of the page.
+    * @param pageToken The token returned by the previous page, or null to read the first page.
+    *
+    * @return The page, containing the relations.
+    */
+    public static Page<Document> getStrategicIndicatorFactorsRelationsPage(String projectId, String evaluationDate,
+                                                                           int pageSize, String pageToken) {
+        return getTargetRelationsPage(projectId, evaluationDate, STRATEGIC_INDICATOR_TYPE, pageSize, pageToken);
+    }
+
+    private static Page<Document> getTargetRelationsPage(String projectId, String evaluationDate, String targetType,
+                                                         int pageSize, String pageToken) {
+        checkPageSize(pageSize);
+        MongoCollection<Document> collection = getCollection(projectId, QMLevel.relations);
+        String[] key = Page.decodeToken(pageToken);
+
+        Bson match = Filters.and(
+            Filters.eq(PROJECT, projectId),
+            FormattedDates.dateEquals(evaluationDate),
+            Filters.eq(TARGETTPYE, targetType)
+        );
+        if (key != null) match = Filters.and(match, Filters.gt("_id", key[0]));
+
+        List<Bson> pipeline = Arrays.asList(
+                Aggregates.match(match),
+                Aggregates.sort(Sorts.ascending("_id")),
+                Aggregates.limit(pageSize)
+        );
+
+        List<Document> result = collection.aggregate(pipeline).into( new ArrayList<>() );
+        String lastID = result.isEmpty() ? null : getStringFromObject(result.get(result.size() - 1).get("_id"));
+        return Page.of(result, result.size(), pageSize, lastID, null);
+    }
+
     /**
     * Create the Strategic Indicators' index, if it does not exist already.
     *
@@ -814,31 +1762,7 @@ public class Queries {
     * @return A boolean indicating if the index was created correctly.
     */
     public static boolean prepareSIIndex(String projectID) {
-        MongoDatabase database = Connection.getMongoDatabase();
-        String collectionName = getIndexName(STRATEGIC_INDICATOR_TYPE, projectID);
-
-        if (database.listCollectionNames().into(new ArrayList<>()).contains(collectionName)) {
-            System.out.println("INDEX ALREADY EXISTS: " + collectionName);
-            return false;
-        }
-
-        try {
-            ValidationOptions validationOptions = new ValidationOptions().validator(STRATEGIC_INDICATORS_MAPPING);
-            CreateCollectionOptions options = new CreateCollectionOptions().validationOptions(validationOptions);
-            database.createCollection(collectionName, options);
-        } catch (MongoException e) {
-            e.printStackTrace();
-            System.out.println("INDEX COULD NOT BE CREATED: " + collectionName);
-            return false;
-        }
-
-        for (String name : database.listCollectionNames())
-            if (name.equals(collectionName)) {
-                System.out.println("INDEX CREATED: " + collectionName);
-                return true;
-            }
-        System.out.println("INDEX COULD NOT BE CREATED: " + collectionName);
-        return false;
+        return prepareIndex(projectID, QMLevel.strategic_indicators, STRATEGIC_INDICATORS_MAPPING);
     }
 
     /**
@@ -849,17 +1773,55 @@ public class Queries {
      * @return A boolean indicating if the index was created correctly.
      */
     public static boolean prepareQFIndex(String projectID) {
-        MongoDatabase database = Connection.getMongoDatabase();
-        String collectionName = getIndexName(FACTOR_TYPE, projectID);
+        return prepareIndex(projectID, QMLevel.factors, FACTORS_MAPPING);
+    }
+
+    /**
+    * Create the Metrics' index, if it does not exist already.
+    *
+    * @param projectID The ID of the project.
+    *
+    * @return A boolean indicating if the index was created correctly.
+    */
+    public static boolean prepareMetricsIndex(String projectID) {
+        return prepareIndex(projectID, QMLevel.metrics, null);
+    }
+
+    /**
+    * Create the Relations' index, if it does not exist already.
+    *
+    * @param projectID The ID of the project.
+    *
+    * @return A boolean indicating if the index was created correctly.
+    */
+    public static boolean prepareRelationsIndex(String projectID) {
+        return prepareIndex(projectID, QMLevel.relations, null);
+    }
+
+    /**
+    * Create the index of a QMLevel, if it does not exist already, and make sure that the secondary
+    * indexes used by the queries are defined on it (see IndexManager), even if the index already existed.
+    *
+    * @param projectID The ID of the project.
+    * @param QMLevel The QMLevel (metrics, factors, strategic_indicators or relations).
+    * @param mapping The $jsonSchema validator of the index, or null if it has none.
+    *
+    * @return A boolean indicating if the index was created correctly.
+    */
+    private static boolean prepareIndex(String projectID, QMLevel QMLevel, Document mapping) {
+        MongoDatabase database = ClientContext.current().getMongoDatabase();
+        CollectionRegistry registry = ClientContext.current().getCollectionRegistry();
+        String collectionName = getIndex(projectID, QMLevel);
 
-        if (database.listCollectionNames().into(new ArrayList<>()).contains(collectionName)) {
+        if (registry.exists(collectionName)) {
             System.out.println("INDEX ALREADY EXISTS: " + collectionName);
+            IndexManager.prepareIndexes(projectID, QMLevel);
             return false;
         }
 
         try {
-            ValidationOptions validationOptions = new ValidationOptions().validator(FACTORS_MAPPING);
-            CreateCollectionOptions options = new CreateCollectionOptions().validationOptions(validationOptions);
+            CreateCollectionOptions options = new CreateCollectionOptions();
+            if (mapping != null) options.validationOptions(new ValidationOptions().validator(mapping));
             database.createCollection(collectionName, options);
         } catch (MongoException e) {
             e.printStackTrace();
@@ -867,13 +1829,14 @@ public class Queries {
             return false;
         }
 
-        for (String name : database.listCollectionNames())
-            if (name.equals(collectionName)) {
-                System.out.println("INDEX CREATED: " + collectionName);
-                return true;
-            }
+        registry.invalidate();
+        if (registry.exists(collectionName)) {
+            System.out.println("INDEX CREATED: " + collectionName);
+            IndexManager.prepareIndexes(projectID, QMLevel);
+            return true;
+        }
         System.out.println("INDEX COULD NOT BE CREATED: " + collectionName);
         return false;
     }
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,313 @@
+package util;
+
+import com.mongodb.MongoException;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.UpdateOptions;
+import com.mongodb.client.model.WriteModel;
+import org.bson.Document;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static util.Constants.*;
+
+/**
+* Write-behind pipeline for the evaluations and relations. Producers enqueue the upserts and continue, while
+* background workers group them by collection into unordered bulk writes, which are sent when they reach the
+* maximum batch size or when the first enqueued write has waited the maximum delay.
+* The queue is bounded: when it is full, the producers wait until there is room for their writes.
+* Writes to the same document are applied in order only when there is a single worker (the default).
+*/
+public class WriteBehindQueue {
+
+    public static final int DEFAULT_CAPACITY = 10000;
+    public static final int DEFAULT_MAX_BATCH_SIZE = 1000;
+    public static final long DEFAULT_MAX_DELAY_MILLIS = 200;
+
+    private static class PendingWrite {
+        private final String projectId;
+        private final String collectionName;
+        private final WriteModel<Document> write;
+
+        private PendingWrite(String projectId, String collectionName, WriteModel<Document> write) {
+            this.projectId = projectId;
+            this.collectionName = collectionName;
+            this.write = write;
+        }
+    }
+
+    private final ClientContext context;
+    private final BlockingQueue<PendingWrite> queue;
+    private final int maxBatchSize;
+    private final long maxDelayMillis;
+    private final List<Thread> workers = new ArrayList<>();
+
+    // Guards closed together with the increments of pending, so that close() never misses an accepted write
+    private final Object stateLock = new Object();
+    private volatile boolean closed = false;
+    private final AtomicLong pending = new AtomicLong();
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+    private volatile int lastBatchSize;
+    private volatile String lastError;
+
+    /**
+    * Create and start a write-behind queue, which writes in the database of the given context.
+    *
+    * @param context The context of the database.
+    * @param capacity Maximum number of writes waiting in the queue.
+    * @param maxBatchSize Maximum number of writes sent in each bulk write.
+    * @param maxDelayMillis Maximum time (in milliseconds) a write waits for other writes to fill its batch.
+    * @param workerCount Number of threads sending the bulk writes.
+    */
+    public WriteBehindQueue(ClientContext context, int capacity, int maxBatchSize, long maxDelayMillis, int workerCount) {
+        if (capacity <= 0 || maxBatchSize <= 0 || maxDelayMillis < 0 || workerCount <= 0)
+            throw new IllegalArgumentException("Invalid write-behind queue configuration");
+        this.context = context;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.maxBatchSize = maxBatchSize;
+        this.maxDelayMillis = maxDelayMillis;
+        for (int i = 0; i < workerCount; i++) {
+            Thread worker = new Thread(this::run, "write-behind-" + i);
+            worker.setDaemon(true);
+            workers.add(worker);
+            worker.start();
+        }
+    }
+
+    public WriteBehindQueue(ClientContext context) {
+        this(context, DEFAULT_CAPACITY, DEFAULT_MAX_BATCH_SIZE, DEFAULT_MAX_DELAY_MILLIS, 1);
+    }
+
+    /**
+    * Enqueue the upsert of an evaluation (see Queries.buildFactorUpdate and Queries.buildStrategicIndicatorUpdate).
+    *
+    * @param QMLevel The QMLevel of the evaluation.
+    * @param projectId The ID of the project.
+    * @param hardID The hard ID of the evaluation.
+    * @param update The update of the evaluation.
+    */
+    public void enqueue(QMLevel QMLevel, String projectId, String hardID, Document update) {
+        String collectionName = Queries.getIndex(projectId, QMLevel);
+        checkCollection(collectionName);
+        put(new PendingWrite(projectId, collectionName,
+            new UpdateOneModel<>(new Document("_id", hardID), update, new UpdateOptions().upsert(true))));
+
+        if (LatestCollections.isAvailable(context, projectId, QMLevel)) {
+            WriteModel<Document> latest = LatestCollections.getUpsert(QMLevel, update);
+            if (latest != null) put(new PendingWrite(projectId, LatestCollections.getIndex(projectId, QMLevel), latest));
+        }
+    }
+
+    /**
+    * Enqueue the relations between a set of factors and a strategic indicator (see Queries.setFactorSIRelationIndex).
+    */
+    public void enqueueFactorSIRelations(String projectID, String[] factorID, double[] weight, double[] sourceValue,
+                                         String[] sourceCategories, String strategicIndicatorID,
+                                         LocalDate evaluationDate, String targetValue) {
+        enqueueRelations(projectID, Queries.getRelationWrites(projectID, factorID, weight, sourceValue,
+            sourceCategories, strategicIndicatorID, evaluationDate, targetValue, false));
+    }
+
+    /**
+    * Enqueue the relations between a set of metrics and a factor (see Queries.setMetricQFRelationIndex).
+    */
+    public void enqueueMetricQFRelations(String projectID, String[] metricID, double[] weight, double[] sourceValue,
+                                         String[] sourceCategories, String qualityFactorID,
+                                         LocalDate evaluationDate, String targetValue) {
+        enqueueRelations(projectID, Queries.getRelationWrites(projectID, metricID, weight, sourceValue,
+            sourceCategories, qualityFactorID, evaluationDate, targetValue, true));
+    }
+
+    private void enqueueRelations(String projectID, List<WriteModel<Document>> writes) {
+        String collectionName = Queries.getIndex(projectID, QMLevel.relations);
+        checkCollection(collectionName);
+        for (WriteModel<Document> write : writes) put(new PendingWrite(projectID, collectionName, write));
+    }
+
+    private void checkCollection(String collectionName) {
+        if (!context.getCollectionRegistry().exists(collectionName))
+            throw new MongoException("Collection '" + collectionName + "' does not exist");
+    }
+
+    private void put(PendingWrite write) {
+        synchronized (stateLock) {
+            if (closed) throw new IllegalStateException("The write-behind queue is closed");
+            pending.incrementAndGet();
+        }
+        try {
+            queue.put(write);
+        } catch (InterruptedException e) {
+            completed(1);
+            Thread.currentThread().interrupt();
+            throw new MongoException("Interrupted while waiting for room in the write-behind queue", e);
+        }
+    }
+
+    private void run() {
+        List<PendingWrite> batch = new ArrayList<>();
+        boolean interrupted = false;
+        // The pending writes are counted before being enqueued, so no worker stops while a producer is enqueuing
+        while (!interrupted && (!closed || pending.get() > 0)) {
+            try {
+                PendingWrite first = queue.poll(maxDelayMillis > 0 ? maxDelayMillis : 1, TimeUnit.MILLISECONDS);
+                if (first == null) continue;
+                batch.add(first);
+                long deadline = System.currentTimeMillis() + maxDelayMillis;
+                while (batch.size() < maxBatchSize) {
+                    long wait = deadline - System.currentTimeMillis();
+                    PendingWrite next = wait > 0 ? queue.poll(wait, TimeUnit.MILLISECONDS) : queue.poll();
+                    if (next == null) break;
+                    batch.add(next);
+                }
+            } catch (InterruptedException e) {
+                // close() interrupts the workers after the pending writes have been sent
+                interrupted = true;
+            }
+            if (!batch.isEmpty()) {
+                write(batch);
+                batch = new ArrayList<>();
+            }
+        }
+        // Send anything still queued before stopping, so that no accepted write is lost
+        while (queue.drainTo(batch, maxBatchSize) > 0) {
+            write(batch);
+            batch = new ArrayList<>();
+        }
+    }
+
+    private void write(List<PendingWrite> batch) {
+        Map<String, List<WriteModel<Document>>> collections = new LinkedHashMap<>();
+        Map<String, String> projects = new HashMap<>();
+        for (PendingWrite write : batch) {
+            collections.computeIfAbsent(write.collectionName, k -> new ArrayList<>()).add(write.write);
+            projects.put(write.collectionName, write.projectId);
+        }
+
+        BulkWriteOptions bulkWriteOptions = new BulkWriteOptions().ordered(false);
+        for (Map.Entry<String, List<WriteModel<Document>>> entry : collections.entrySet()) {
+            List<WriteModel<Document>> writes = entry.getValue();
+            try {
+                MongoCollection<Document> collection = context.getMongoDatabase().getCollection(entry.getKey());
+                collection.bulkWrite(writes, bulkWriteOptions);
+                written.addAndGet(writes.size());
+            } catch (RuntimeException e) {
+                // Keep the worker alive, the writes of other collections and batches are still sent
+                failed.addAndGet(writes.size());
+                lastError = entry.getKey() + ": " + e.getMessage();
+                System.err.println("WRITE-BEHIND ERROR: " + lastError);
+            } finally {
+                batches.incrementAndGet();
+                lastBatchSize = writes.size();
+                // Even failed bulk writes may have modified some documents
+                EvaluationCache cache = context.getEvaluationCache();
+                if (cache != null) cache.invalidate(projects.get(entry.getKey()));
+                context.getNameCache().invalidate(projects.get(entry.getKey()));
+                completed(writes.size());
+            }
+        }
+    }
+
+    private void completed(int count) {
+        if (pending.addAndGet(-count) == 0) {
+            synchronized (this) {
+                notifyAll();
+            }
+        }
+    }
+
+    /**
+    * Wait until every enqueued write has been sent to the database.
+    */
+    public void flush() {
+        synchronized (this) {
+            while (pending.get() > 0) {
+                try {
+                    wait(maxDelayMillis + 100);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new MongoException("Interrupted while flushing the write-behind queue", e);
+                }
+            }
+        }
+    }
+
+    /**
+    * Stop accepting writes, wait until the enqueued ones have been sent and stop the workers.
+    */
+    public void close() {
+        synchronized (stateLock) {
+            closed = true;
+        }
+        flush();
+        for (Thread worker : workers) {
+            worker.interrupt();
+            try {
+                worker.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    /**
+    * Get the number of writes waiting in the queue (not including the batches being sent).
+    */
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    /**
+    * Get the number of writes that have not been sent yet (including the batches being sent).
+    */
+    public long getPendingCount() {
+        return pending.get();
+    }
+
+    public long getWrittenCount() {
+        return written.get();
+    }
+
+    public long getFailedCount() {
+        return failed.get();
+    }
+
+    public long getBatchCount() {
+        return batches.get();
+    }
+
+    public int getLastBatchSize() {
+        return lastBatchSize;
+    }
+
+    public double getAverageBatchSize() {
+        long count = batches.get();
+        return count == 0 ? 0 : (double) (written.get() + failed.get()) / count;
+    }
+
+    /**
+    * Get the last error returned by the database, with the collection where it happened.
+    *
+    * @return The error message, or null if every write has succeeded.
+    */
+    public String getLastError() {
+        return lastError;
+    }
+
+}
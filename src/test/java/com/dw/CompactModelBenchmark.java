@@ -0,0 +1,55 @@
+package com.dw;
+
+import org.bson.Document;
+import simulation.CompactModel;
+import simulation.Model;
+
+import java.util.List;
+import java.util.Random;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+// Compares the simulation time of CompactModel against Model on a large synthetic quality model
+@SuppressWarnings("ALL")
+class CompactModelBenchmark {
+
+    private static final int METRICS = 50000;
+    private static final int FACTORS = 5000;
+    private static final int FACTORS_PER_METRIC = 8;
+    private static final int CHANGES = 500;
+    private static final int ITERATIONS = 50;
+
+    public static void main(String[] args) {
+        // The synthetic relations are consistent, silence the validation warnings of Model
+        Logger.getLogger("").setLevel(Level.SEVERE);
+        List<Document> relations = SimulationFixtures.buildRelations(new Random(0), METRICS, FACTORS, FACTORS_PER_METRIC);
+
+        long start = System.nanoTime();
+        Model model = new Model(SimulationFixtures.buildMetrics(METRICS), SimulationFixtures.buildFactors(FACTORS), relations);
+        System.out.println("Model build: " + (System.nanoTime() - start) / 1000000 + " ms");
+        start = System.nanoTime();
+        CompactModel compact = new CompactModel(SimulationFixtures.buildMetrics(METRICS), SimulationFixtures.buildFactors(FACTORS), relations);
+        System.out.println("CompactModel build: " + (System.nanoTime() - start) / 1000000 + " ms");
+
+        // Note that Model keeps recomputing every factor changed since its creation, while CompactModel only the new ones
+        long modelNanos = 0, compactNanos = 0;
+        Random random = new Random(1);
+        for (int i = 0; i < ITERATIONS; ++i) {
+            int[] metrics = new int[CHANGES];
+            for (int j = 0; j < CHANGES; ++j) metrics[j] = random.nextInt(METRICS);
+
+            start = System.nanoTime();
+            for (int metric : metrics) model.setMetric(SimulationFixtures.getMetricId(metric), random.nextDouble());
+            model.simulate();
+            modelNanos += System.nanoTime() - start;
+
+            start = System.nanoTime();
+            for (int metric : metrics) compact.setMetric(SimulationFixtures.getMetricId(metric), random.nextDouble());
+            compact.simulate();
+            compactNanos += System.nanoTime() - start;
+        }
+        System.out.println("Model simulate: " + modelNanos / ITERATIONS / 1000 + " us/iteration");
+        System.out.println("CompactModel simulate: " + compactNanos / ITERATIONS / 1000 + " us/iteration");
+    }
+
+}
@@ -0,0 +1,98 @@
+package com.dw;
+
+import DTOs.EvaluationDTO;
+import DTOs.FactorEvaluationDTO;
+import DTOs.MetricEvaluationDTO;
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+import org.bson.Document;
+import simulation.CompactModel;
+import simulation.Model;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static com.dw.SimulationFixtures.*;
+
+// Checks that CompactModel gives the same results as Model on synthetic quality models
+public class CompactModelTest extends TestCase {
+
+    public CompactModelTest(String testName)
+    {
+        super( testName );
+    }
+
+    public static Test suite()
+    {
+        return new TestSuite( CompactModelTest.class );
+    }
+
+    public void testSameFactorsAsModel()
+    {
+        for (int seed = 0; seed < 20; ++seed) {
+            Random random = new Random(seed);
+            int metrics = 1 + random.nextInt(200);
+            int factors = 1 + random.nextInt(40);
+            List<Document> relations = buildRelations(random, metrics, factors, 8);
+
+            // Some metrics have no value, which both engines count as 0
+            Set<Integer> withoutValue = new HashSet<>();
+            for (int i = 0; i < metrics / 10; ++i) withoutValue.add(random.nextInt(metrics));
+
+            Model model = new Model(clearValues(buildMetrics(metrics), withoutValue), buildFactors(factors), relations);
+            CompactModel compact = new CompactModel(clearValues(buildMetrics(metrics), withoutValue),
+                buildFactors(factors), relations);
+            assertSameFactors(model.getFactors(), compact.getFactors());
+
+            for (int round = 0; round < 5; ++round) {
+                Map<String, Double> changes = new HashMap<>();
+                for (int i = 0; i < 1 + random.nextInt(10); ++i)
+                    changes.put(getMetricId(random.nextInt(metrics)), random.nextDouble());
+                model.setMetrics(changes);
+                compact.setMetrics(changes);
+                assertSameFactors(model.simulate(), compact.simulate());
+            }
+        }
+    }
+
+    public void testUnknownMetric()
+    {
+        CompactModel compact = new CompactModel(buildMetrics(1), buildFactors(1),
+            buildRelations(new Random(0), 1, 1, 1));
+        try {
+            compact.setMetric("unknown", 0.5);
+            fail();
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage().contains("unknown"));
+        }
+    }
+
+    private static List<MetricEvaluationDTO> clearValues(List<MetricEvaluationDTO> metrics, Set<Integer> indexes)
+    {
+        for (int i : indexes) {
+            EvaluationDTO empty = new EvaluationDTO();
+            empty.setID(getMetricId(i));
+            empty.setEvaluationDate(DATE);
+            metrics.get(i).setEvaluations(new ArrayList<>(Collections.singletonList(empty)));
+        }
+        return metrics;
+    }
+
+    private static void assertSameFactors(Collection<FactorEvaluationDTO> expected, Collection<FactorEvaluationDTO> actual)
+    {
+        Map<String, Float> values = new HashMap<>();
+        for (FactorEvaluationDTO factor : expected)
+            values.put(factor.getEvaluations().get(0).getID(), factor.getEvaluations().get(0).getValue());
+        assertEquals(values.size(), actual.size());
+        for (FactorEvaluationDTO factor : actual)
+            assertEquals(values.get(factor.getEvaluations().get(0).getID()), factor.getEvaluations().get(0).getValue());
+    }
+}
@@ -0,0 +1,95 @@
+package com.dw;
+
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.Accumulators;
+import com.mongodb.client.model.Aggregates;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.Sorts;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import util.Connection;
+import util.Constants;
+import util.IndexManager;
+import util.Queries;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// Compares the latest evaluation pipeline in Queries against the previous $push + $slice pipeline
+@SuppressWarnings("ALL")
+class LatestBenchmark {
+
+    private static final int ITERATIONS = 20;
+
+    public static void main(String[] args) {
+        String projectId = "test";
+
+        // Set correct values before running the benchmark
+        String ip = "";
+        int port = 0;
+        String database = "";
+        String username = null;
+        String password = null;
+
+        Connection.initConnection(ip, port, database, username, password);
+        PrintStream stdout = System.out;
+
+        Constants.QMLevel[] levels = {
+            Constants.QMLevel.metrics, Constants.QMLevel.factors, Constants.QMLevel.strategic_indicators
+        };
+        for (Constants.QMLevel level : levels) {
+            IndexManager.prepareIndexes(projectId, level);
+            MongoCollection<Document> collection =
+                Connection.getMongoDatabase().getCollection(level.name() + "." + projectId);
+            List<Bson> legacy = getLegacyPipeline(getGroup(level));
+
+            // Queries prints every document it returns, silence it while timing
+            System.setOut(new PrintStream(new OutputStream() {
+                public void write(int b) { }
+            }));
+
+            long legacyTime = 0, currentTime = 0;
+            int legacySize = 0, currentSize = 0;
+            for (int i = 0; i < ITERATIONS; i++) {
+                long start = System.nanoTime();
+                legacySize = collection.aggregate(legacy).into(new ArrayList<>()).size();
+                legacyTime += System.nanoTime() - start;
+
+                start = System.nanoTime();
+                currentSize = Queries.getLatest(projectId, level).size();
+                currentTime += System.nanoTime() - start;
+            }
+            System.setOut(stdout);
+
+            System.out.println(level + ": legacy " + (legacyTime / ITERATIONS / 1000000.0) + " ms (" + legacySize +
+                " elements), current " + (currentTime / ITERATIONS / 1000000.0) + " ms (" + currentSize + " elements)");
+        }
+        Connection.closeConnection();
+    }
+
+    private static String getGroup(Constants.QMLevel level) {
+        switch (level) {
+            case metrics: return "metric";
+            case factors: return "factor";
+            default: return "strategic_indicator";
+        }
+    }
+
+    private static List<Bson> getLegacyPipeline(String group) {
+        return Arrays.asList(
+            Aggregates.match(new Document()),
+            Aggregates.sort(Sorts.descending(Constants.EVALUATION_DATE)),
+            Aggregates.group("$" + group, Accumulators.push("documents", "$$ROOT")),
+            Aggregates.limit(10000),
+            Aggregates.project(
+                Projections.fields(
+                    Projections.computed("documents", new Document("$slice", Arrays.asList("$documents", 1)))
+                )
+            ),
+            Aggregates.sort(Sorts.ascending("documents." + group))
+        );
+    }
+}
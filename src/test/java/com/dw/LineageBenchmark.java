@@ -0,0 +1,106 @@
+package com.dw;
+
+import DTOs.FactorEvaluationDTO;
+import DTOs.FactorMetricEvaluationDTO;
+import evaluation.Factor;
+import evaluation.StrategicIndicator;
+import org.bson.Document;
+import util.Connection;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+// Compares the strategic indicator -> factors -> metrics lineage loader against the previous per-factor path,
+// counting the aggregations run by the server (serverStatus) and the latency of each one
+@SuppressWarnings("ALL")
+class LineageBenchmark {
+
+    private static final int ITERATIONS = 20;
+
+    public static void main(String[] args) {
+        String projectId = "test";
+        String strategicIndicatorId = "sA";
+        LocalDate dateFrom = LocalDate.of(2023, 10, 13);
+        LocalDate dateTo = LocalDate.of(2023, 10, 15);
+
+        // Set correct values before running the benchmark
+        String ip = "";
+        int port = 0;
+        String database = "";
+        String username = null;
+        String password = null;
+
+        Connection.initConnection(ip, port, database, username, password);
+        PrintStream stdout = System.out;
+
+        // Queries prints every document it returns, silence it while timing
+        System.setOut(new PrintStream(new OutputStream() {
+            public void write(int b) { }
+        }));
+
+        long legacyTime = 0, currentTime = 0;
+        long legacyQueries = 0, currentQueries = 0;
+        int legacySize = 0, currentSize = 0;
+        for (int i = 0; i < ITERATIONS; i++) {
+            long queries = getAggregateCount();
+            long start = System.nanoTime();
+            legacySize = getLegacyMetricsEvaluations(projectId, strategicIndicatorId).size();
+            legacyTime += System.nanoTime() - start;
+            legacyQueries += getAggregateCount() - queries;
+
+            queries = getAggregateCount();
+            start = System.nanoTime();
+            currentSize = StrategicIndicator.getMetricsEvaluations(projectId, strategicIndicatorId).size();
+            currentTime += System.nanoTime() - start;
+            currentQueries += getAggregateCount() - queries;
+        }
+
+        long legacyRangedTime = 0, currentRangedTime = 0;
+        for (int i = 0; i < ITERATIONS; i++) {
+            long start = System.nanoTime();
+            getLegacyMetricsEvaluations(projectId, strategicIndicatorId, dateFrom, dateTo);
+            legacyRangedTime += System.nanoTime() - start;
+
+            start = System.nanoTime();
+            StrategicIndicator.getMetricsEvaluations(projectId, strategicIndicatorId, dateFrom, dateTo);
+            currentRangedTime += System.nanoTime() - start;
+        }
+        System.setOut(stdout);
+
+        // serverStatus runs as a command, not as an aggregation, so it is not counted
+        System.out.println("latest: legacy " + (legacyTime / ITERATIONS / 1000000.0) + " ms, " +
+            (legacyQueries / ITERATIONS) + " aggregations (" + legacySize + " factors), current " +
+            (currentTime / ITERATIONS / 1000000.0) + " ms, " + (currentQueries / ITERATIONS) +
+            " aggregations (" + currentSize + " factors)");
+        System.out.println("ranged: legacy " + (legacyRangedTime / ITERATIONS / 1000000.0) + " ms, current " +
+            (currentRangedTime / ITERATIONS / 1000000.0) + " ms");
+        Connection.closeConnection();
+    }
+
+    private static long getAggregateCount() {
+        Document status = Connection.getMongoDatabase().runCommand(new Document("serverStatus", 1));
+        Document metrics = (Document) status.get("metrics");
+        Document commands = (Document) metrics.get("commands");
+        Document aggregate = (Document) commands.get("aggregate");
+        return ((Number) aggregate.get("total")).longValue();
+    }
+
+    // Previous implementation: the factors of the strategic indicator, and the metrics of each factor
+    private static List<FactorMetricEvaluationDTO> getLegacyMetricsEvaluations(String projectId, String strategicIndicatorId) {
+        List<FactorMetricEvaluationDTO> ret = new ArrayList<>();
+        for (FactorEvaluationDTO factor : StrategicIndicator.getFactorsEvaluations(projectId, strategicIndicatorId).getFactors())
+            ret.add(new FactorMetricEvaluationDTO(factor, Factor.getMetricsEvaluations(projectId, factor.getID()).getMetrics()));
+        return ret;
+    }
+
+    private static List<FactorMetricEvaluationDTO> getLegacyMetricsEvaluations(String projectId, String strategicIndicatorId,
+                                                                               LocalDate dateFrom, LocalDate dateTo) {
+        List<FactorMetricEvaluationDTO> ret = new ArrayList<>();
+        for (FactorEvaluationDTO factor : StrategicIndicator.getFactorsEvaluations(projectId, strategicIndicatorId, dateFrom, dateTo).getFactors())
+            ret.add(new FactorMetricEvaluationDTO(factor, Factor.getMetricsEvaluations(projectId, factor.getID(), dateFrom, dateTo).getMetrics()));
+        return ret;
+    }
+}
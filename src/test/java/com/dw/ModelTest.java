@@ -0,0 +1,129 @@
+package com.dw;
+
+import DTOs.EvaluationDTO;
+import DTOs.FactorEvaluationDTO;
+import DTOs.StrategicIndicatorEvaluationDTO;
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+import org.bson.Document;
+import simulation.Model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static com.dw.SimulationFixtures.*;
+
+// Checks the propagation of Model to the strategic indicators, with the IDs written by the evaluation classes
+public class ModelTest extends TestCase {
+
+    public ModelTest(String testName)
+    {
+        super( testName );
+    }
+
+    public static Test suite()
+    {
+        return new TestSuite( ModelTest.class );
+    }
+
+    public void testIndicatorsWithElementFields()
+    {
+        assertIndicatorsPropagated(true);
+    }
+
+    public void testIndicatorsWithHardIDsOnly()
+    {
+        assertIndicatorsPropagated(false);
+    }
+
+    public void testFactorWithoutValue()
+    {
+        List<FactorEvaluationDTO> factors = buildFactors(2);
+        EvaluationDTO empty = new EvaluationDTO();
+        empty.setID(getFactorId(1));
+        empty.setEvaluationDate(DATE);
+        factors.get(1).setEvaluations(new ArrayList<>(Collections.singletonList(empty)));
+
+        List<Document> indicatorRelations = Arrays.asList(
+            buildIndicatorRelation(0, 0, 1.0, true),
+            buildIndicatorRelation(1, 0, 1.0, true));
+        Model model = new Model(buildMetrics(1), factors, buildRelations(new Random(0), 1, 1, 1),
+            buildIndicators(1), indicatorRelations);
+
+        model.setMetric(getMetricId(0), 0.8);
+        model.simulate();
+        // The factor without value counts as 0
+        assertEquals(0.4f, getIndicatorValue(model, "s0"), 1e-6f);
+    }
+
+    private static void assertIndicatorsPropagated(boolean elementFields)
+    {
+        Random random = new Random(0);
+        int metrics = 30, factors = 10, indicators = 3;
+        List<Document> relations = buildRelations(random, metrics, factors, 4);
+
+        List<Document> indicatorRelations = new ArrayList<>();
+        Map<String, Map<Integer, Double>> weights = new HashMap<>();
+        for (int f = 0; f < factors; ++f) {
+            int s = f % indicators;
+            double weight = 1 + random.nextInt(3);
+            indicatorRelations.add(buildIndicatorRelation(f, s, weight, elementFields));
+            weights.computeIfAbsent("s" + s, k -> new HashMap<>()).put(f, weight);
+        }
+
+        Model model = new Model(buildMetrics(metrics), buildFactors(factors), relations,
+            buildIndicators(indicators), indicatorRelations);
+        for (int m = 0; m < metrics; ++m) model.setMetric(getMetricId(m), random.nextDouble());
+        model.simulate();
+
+        Map<String, Float> factorValues = new HashMap<>();
+        for (FactorEvaluationDTO factor : model.getFactors())
+            factorValues.put(factor.getEvaluations().get(0).getID(), factor.getEvaluations().get(0).getValue());
+        for (Map.Entry<String, Map<Integer, Double>> indicator : weights.entrySet()) {
+            double sumWeights = 0.0, sumValues = 0.0;
+            for (Map.Entry<Integer, Double> weight : indicator.getValue().entrySet()) {
+                sumWeights += weight.getValue();
+                sumValues += factorValues.get(getFactorId(weight.getKey())) * weight.getValue();
+            }
+            assertEquals((float) (sumValues / sumWeights), getIndicatorValue(model, indicator.getKey()), 1e-6f);
+        }
+    }
+
+    private static float getIndicatorValue(Model model, String indicatorId)
+    {
+        for (StrategicIndicatorEvaluationDTO indicator : model.getStrategicIndicators())
+            if (indicator.getID().equals(indicatorId)) return indicator.getEvaluations().get(0).getValue();
+        fail("Strategic indicator not found: " + indicatorId);
+        return 0;
+    }
+
+    // Same hard ID as StrategicIndicator.getHardID: SI-date, without the project
+    private static List<StrategicIndicatorEvaluationDTO> buildIndicators(int count)
+    {
+        List<StrategicIndicatorEvaluationDTO> indicators = new ArrayList<>();
+        for (int i = 0; i < count; ++i) {
+            EvaluationDTO eval = new EvaluationDTO(String.join("-", "s" + i, DATE.toString()), "test", DATE, 0.5f, null);
+            indicators.add(new StrategicIndicatorEvaluationDTO("s" + i, "s" + i, "", PROJECT,
+                new ArrayList<>(Collections.singletonList(eval)), new ArrayList<>()));
+        }
+        return indicators;
+    }
+
+    // Same sourceId and targetId as the relations written by Queries: project-element-date
+    private static Document buildIndicatorRelation(int factor, int indicator, double weight, boolean elementFields)
+    {
+        Document relation = new Document("project", PROJECT)
+            .append("sourceId", getFactorId(factor))
+            .append("targetId", String.join("-", PROJECT, "s" + indicator, DATE.toString()))
+            .append("weight", weight);
+        if (elementFields)
+            relation.append("sourceElement", "f" + factor).append("targetElement", "s" + indicator);
+        return relation;
+    }
+}
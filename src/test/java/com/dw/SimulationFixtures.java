@@ -0,0 +1,68 @@
+package com.dw;
+
+import DTOs.EvaluationDTO;
+import DTOs.FactorEvaluationDTO;
+import DTOs.MetricEvaluationDTO;
+import org.bson.Document;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+// Synthetic quality models for the simulation tests and benchmarks, with the hard IDs written by the evaluation classes
+class SimulationFixtures {
+
+    static final String PROJECT = "test";
+    static final LocalDate DATE = LocalDate.of(2023, 10, 14);
+
+    static String getMetricId(int metric)
+    {
+        return String.join("-", PROJECT, "m" + metric, DATE.toString());
+    }
+
+    static String getFactorId(int factor)
+    {
+        return String.join("-", PROJECT, "f" + factor, DATE.toString());
+    }
+
+    static List<MetricEvaluationDTO> buildMetrics(int count)
+    {
+        List<MetricEvaluationDTO> metrics = new ArrayList<>();
+        Random random = new Random(count);
+        for (int i = 0; i < count; ++i) {
+            EvaluationDTO eval = new EvaluationDTO(getMetricId(i), "test", DATE, random.nextFloat(), null);
+            metrics.add(new MetricEvaluationDTO("m" + i, "m" + i, "", PROJECT,
+                new ArrayList<>(Collections.singletonList(eval)), new ArrayList<>()));
+        }
+        return metrics;
+    }
+
+    static List<FactorEvaluationDTO> buildFactors(int count)
+    {
+        List<FactorEvaluationDTO> factors = new ArrayList<>();
+        for (int i = 0; i < count; ++i) {
+            EvaluationDTO eval = new EvaluationDTO(getFactorId(i), "test", DATE, 0.5f, null);
+            factors.add(new FactorEvaluationDTO("f" + i, "f" + i, "", PROJECT,
+                new ArrayList<>(Collections.singletonList(eval)), new ArrayList<>()));
+        }
+        return factors;
+    }
+
+    // Every metric impacts between 1 and maxFactors factors, with Integer or Double weights
+    static List<Document> buildRelations(Random random, int metrics, int factors, int maxFactors)
+    {
+        List<Document> relations = new ArrayList<>();
+        for (int m = 0; m < metrics; ++m) {
+            int count = 1 + random.nextInt(Math.min(maxFactors, factors));
+            for (int i = 0; i < count; ++i) {
+                Object weight = random.nextBoolean() ? (Object) (1 + random.nextInt(3)) : (Object) random.nextDouble();
+                relations.add(new Document("sourceId", getMetricId(m))
+                    .append("targetId", getFactorId(random.nextInt(factors)))
+                    .append("weight", weight));
+            }
+        }
+        return relations;
+    }
+}
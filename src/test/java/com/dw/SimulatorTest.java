@@ -15,6 +15,7 @@ public class SimulatorTest {
 		Connection.initConnection("", 0, "", null, null);
 		Model model = Simulator.createModel( "test", "2023-10-14");
 		Simulator.factorPrinter( model.getFactors() );
+		Simulator.strategicIndicatorPrinter( model.getStrategicIndicators() );
 
 		model.setMetric("test-mB-2023-10-14", 0.5);
 		Collection<FactorEvaluationDTO> factors = model.simulate();
@@ -23,6 +24,7 @@ public class SimulatorTest {
 		model.setMetric("test-mB-2023-10-14", 0.0);
 		factors = model.simulate();
 		Simulator.factorPrinter( factors );
+		Simulator.strategicIndicatorPrinter( model.getStrategicIndicators() );
 		Connection.closeConnection();
 	}
 	
@@ -0,0 +1,68 @@
+package util;
+
+import com.mongodb.MongoClientSettings;
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+import org.bson.BsonDocument;
+import org.bson.conversions.Bson;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static util.Constants.*;
+
+// Checks the order of the stages of the ranged pipelines, which is built by inserting optional stages
+public class QueriesTest extends TestCase {
+
+    private static final LocalDate FROM = LocalDate.of(2023, 10, 1);
+    private static final LocalDate TO = LocalDate.of(2023, 10, 14);
+
+    public QueriesTest(String testName)
+    {
+        super( testName );
+    }
+
+    public static Test suite()
+    {
+        return new TestSuite( QueriesTest.class );
+    }
+
+    public void testRangedElementWithProfile()
+    {
+        List<BsonDocument> stages = toDocuments(Queries.getRangedElementPipeline(QMLevel.metrics, "m0", FROM, TO,
+            ReadProfile.values, null));
+        assertEquals(Arrays.asList("$match", "$match", "$sort", "$project", "$group", "$limit", "$project", "$sort"),
+            getNames(stages));
+        // The profile keeps the fields of the evaluations, before they are pushed into the buckets
+        assertTrue(stages.get(3).getDocument("$project").containsKey(VALUE));
+    }
+
+    public void testRangedElementWithProfileAndDownsampling()
+    {
+        List<BsonDocument> stages = toDocuments(Queries.getRangedElementPipeline(QMLevel.metrics, "m0", FROM, TO,
+            ReadProfile.values, Downsampling.weekly(Downsampling.Aggregation.mean)));
+        assertEquals(Arrays.asList("$match", "$match", "$sort", "$group", "$replaceRoot", "$sort", "$project",
+            "$group", "$limit", "$project", "$sort"), getNames(stages));
+        // The buckets are sorted by date before the evaluations are pushed
+        assertEquals(-1, stages.get(5).getDocument("$sort").getInt32(EVALUATION_DATE).getValue());
+        assertTrue(stages.get(6).getDocument("$project").containsKey(VALUE));
+    }
+
+    private static List<BsonDocument> toDocuments(List<Bson> pipeline)
+    {
+        List<BsonDocument> stages = new ArrayList<>();
+        for (Bson stage : pipeline)
+            stages.add(stage.toBsonDocument(BsonDocument.class, MongoClientSettings.getDefaultCodecRegistry()));
+        return stages;
+    }
+
+    private static List<String> getNames(List<BsonDocument> stages)
+    {
+        List<String> names = new ArrayList<>();
+        for (BsonDocument stage : stages) names.add(stage.getFirstKey());
+        return names;
+    }
+}